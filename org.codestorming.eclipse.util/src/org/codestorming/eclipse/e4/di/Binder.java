@@ -13,8 +13,10 @@ package org.codestorming.eclipse.e4.di;
 
 import static org.eclipse.core.runtime.Assert.isNotNull;
 
+import org.codestorming.eclipse.util.pde.BundleClassCache;
 import org.eclipse.e4.core.di.IBinding;
 import org.eclipse.e4.core.di.IInjector;
+import org.eclipse.e4.core.di.InjectionException;
 
 /**
  * Implementation of the {@link IBinder}.
@@ -26,8 +28,14 @@ public abstract class Binder implements IBinder {
 
 	private IInjector injector;
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Binders are shared by the injectors, the configurations of a binder are
+	 * serialized.
+	 */
 	@Override
-	public final void configure(IInjector injector) {
+	public final synchronized void configure(IInjector injector) {
 		isNotNull(injector);
 		this.injector = injector;
 		configure();
@@ -41,4 +49,36 @@ public abstract class Binder implements IBinder {
 		return injector.addBinding(clazz);
 	}
 
+	/**
+	 * Creates a binding for the given {@code class} into this binder's injector,
+	 * implemented by the class of the given name.
+	 * <p>
+	 * The implementation class is looked up through its bundle, so that the binder does
+	 * not reference it. It is still loaded when the binding is created, during the
+	 * configuration of the binder, and not when the binding is first used.
+	 * 
+	 * @param clazz The {@code class} for which to create a binding.
+	 * @param bundleId Symbolic name of the bundle providing the implementation.
+	 * @param className Fully qualified name of the implementation class.
+	 * @return the created binding.
+	 * @throws InjectionException if the implementation class cannot be found or does not
+	 *         implement the given {@code class}.
+	 * @since 3.1
+	 */
+	protected IBinding bind(Class<?> clazz, String bundleId, String className) {
+		isNotNull(clazz);
+		isNotNull(bundleId);
+		isNotNull(className);
+		final Class<?> implementation;
+		try {
+			implementation = BundleClassCache.loadClass(bundleId, className);
+		} catch (ClassNotFoundException e) {
+			throw new InjectionException("Couldn't find " + className + " in bundle " + bundleId, e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (!clazz.isAssignableFrom(implementation)) {
+			throw new InjectionException(className + " does not implement " + clazz.getName()); //$NON-NLS-1$
+		}// else
+		return bind(clazz).implementedBy(implementation);
+	}
+
 }
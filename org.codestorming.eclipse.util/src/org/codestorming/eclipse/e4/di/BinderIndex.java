@@ -0,0 +1,114 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.e4.di;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Index of the {@link IBinder binders} contributed by a bundle, generated at build time
+ * by the {@link BinderIndexGenerator}.
+ * <p>
+ * The index is stored in the {@value #LOCATION} file of the bundle, one binder per line :
+ * 
+ * <pre>
+ * binderClass[;superBundleId;superClass;extends]
+ * </pre>
+ * 
+ * Where {@code extends} is {@code true} if the binder class extends the binder it
+ * inherits from. Lines starting with {@code #} are comments.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+final class BinderIndex {
+
+	/**
+	 * Location of the index in the contributing bundles.
+	 */
+	static final String LOCATION = "META-INF/binders.index"; //$NON-NLS-1$
+
+	private static final char SEPARATOR = ';';
+	private static final char COMMENT = '#';
+
+	// Suppressing default constructor, ensuring non-instantiability
+	private BinderIndex() {}
+
+	/**
+	 * Reads the entries of an index.
+	 * 
+	 * @param reader The reader of the index.
+	 * @return the entries of the index.
+	 * @throws IOException if the index is malformed or cannot be read.
+	 */
+	static List<Entry> read(Reader reader) throws IOException {
+		final BufferedReader in = new BufferedReader(reader);
+		final List<Entry> entries = new ArrayList<Entry>();
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (line.length() == 0 || line.charAt(0) == COMMENT) {
+				continue;
+			}// else
+			final String[] fields = line.split(String.valueOf(SEPARATOR));
+			if (fields.length == 1) {
+				entries.add(new Entry(fields[0], null, null, false));
+			} else if (fields.length == 4) {
+				entries.add(new Entry(fields[0], fields[1], fields[2], Boolean.parseBoolean(fields[3])));
+			} else {
+				throw new IOException("Malformed binder index line : " + line); //$NON-NLS-1$
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Writes the given entries as an index.
+	 * 
+	 * @param writer The writer of the index.
+	 * @param entries The entries to write.
+	 * @throws IOException if the index cannot be written.
+	 */
+	static void write(Writer writer, List<Entry> entries) throws IOException {
+		writer.write(COMMENT + " Generated binder index, do not edit\n"); //$NON-NLS-1$
+		for (final Entry entry : entries) {
+			writer.write(entry.className);
+			if (entry.superClassName != null) {
+				writer.write(SEPARATOR + entry.superBundleId + SEPARATOR + entry.superClassName + SEPARATOR
+						+ entry.extendsSuper);
+			}
+			writer.write('\n');
+		}
+	}
+
+	/**
+	 * Binder declared in an index.
+	 */
+	static final class Entry {
+
+		final String className;
+		final String superBundleId;
+		final String superClassName;
+		final boolean extendsSuper;
+
+		Entry(String className, String superBundleId, String superClassName, boolean extendsSuper) {
+			this.className = className;
+			this.superBundleId = superBundleId;
+			this.superClassName = superClassName;
+			this.extendsSuper = extendsSuper;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.e4.di;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Build step generating the {@link BinderIndex binder index} of a bundle from the
+ * {@link IBinder#EXTENSION_POINT_ID binder} extensions of its {@code plugin.xml}.
+ * <p>
+ * The classes of the binders are checked against the given class path, which must
+ * contain the compiled classes of the bundle, this bundle and the bundles declaring the
+ * inherited binders. It is typically called from the {@code post.compile.bin} target of
+ * the {@code customBuildCallbacks.xml} of the contributing bundle :
+ * 
+ * <pre>
+ * &lt;java classname=&quot;org.codestorming.eclipse.e4.di.BinderIndexGenerator&quot; failonerror=&quot;true&quot;&gt;
+ *     &lt;arg value=&quot;${basedir}&quot; /&gt;
+ *     &lt;arg pathref=&quot;@dot.classpath&quot; /&gt;
+ *     &lt;arg value=&quot;${target.folder}/META-INF/binders.index&quot; /&gt;
+ *     ...
+ * &lt;/java&gt;
+ * </pre>
+ * 
+ * Usage : {@code BinderIndexGenerator <bundleDir> <classPath> [<indexFile>]}, the index
+ * being written by default in the {@code META-INF} folder of the bundle.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+public final class BinderIndexGenerator {
+
+	private static final String PLUGIN_XML = "plugin.xml"; //$NON-NLS-1$
+	private static final String EXTENSION = "extension"; //$NON-NLS-1$
+	private static final String POINT = "point"; //$NON-NLS-1$
+	private static final String BINDER = "binder"; //$NON-NLS-1$
+	private static final String INHERITANCE = "inheritance"; //$NON-NLS-1$
+	private static final String CLASS = "class"; //$NON-NLS-1$
+	private static final String BUNDLE_ID = "bundleId"; //$NON-NLS-1$
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+	// Suppressing default constructor, ensuring non-instantiability
+	private BinderIndexGenerator() {}
+
+	/**
+	 * Generates the binder index of a bundle.
+	 * 
+	 * @param args The bundle directory, the class path and optionally the index file.
+	 * @throws Exception if the index cannot be generated.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Usage : BinderIndexGenerator <bundleDir> <classPath> [<indexFile>]"); //$NON-NLS-1$
+			System.exit(2);
+		}// else
+		final File bundleDir = new File(args[0]);
+		final File indexFile = args.length > 2 ? new File(args[2]) : new File(bundleDir, BinderIndex.LOCATION);
+		final List<String> errors = new ArrayList<String>();
+		final List<BinderIndex.Entry> entries = generate(new File(bundleDir, PLUGIN_XML), toURLs(args[1]), errors);
+		if (!errors.isEmpty()) {
+			for (final String error : errors) {
+				System.err.println(error);
+			}
+			System.exit(1);
+		}// else
+		write(indexFile, entries);
+	}
+
+	/**
+	 * Resolves the binders declared in the given {@code plugin.xml}.
+	 * 
+	 * @param pluginXml The {@code plugin.xml} file.
+	 * @param classPath The class path of the bundle.
+	 * @param errors The list receiving the errors.
+	 * @return the entries of the index.
+	 * @throws Exception if the {@code plugin.xml} cannot be parsed.
+	 */
+	static List<BinderIndex.Entry> generate(File pluginXml, URL[] classPath, List<String> errors) throws Exception {
+		final List<BinderIndex.Entry> entries = new ArrayList<BinderIndex.Entry>();
+		if (!pluginXml.isFile()) {
+			return entries;
+		}// else
+		final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(pluginXml);
+		// Resolving IBinder through the parent loader, for the checks to use this class
+		final URLClassLoader loader = new URLClassLoader(classPath, BinderIndexGenerator.class.getClassLoader());
+		final NodeList extensions = document.getElementsByTagName(EXTENSION);
+		for (int i = 0; i < extensions.getLength(); i++) {
+			final Element extension = (Element) extensions.item(i);
+			if (!IBinder.EXTENSION_POINT_ID.equals(extension.getAttribute(POINT))) {
+				continue;
+			}// else
+			for (final Element binder : getChildren(extension, BINDER)) {
+				final BinderIndex.Entry entry = resolve(binder, loader, errors);
+				if (entry != null) {
+					entries.add(entry);
+				}
+			}
+		}
+		return entries;
+	}
+
+	private static BinderIndex.Entry resolve(Element binder, ClassLoader loader, List<String> errors) {
+		final String className = binder.getAttribute(CLASS);
+		final Class<?> binderClass = loadBinderClass(className, loader, errors);
+		if (binderClass == null) {
+			return null;
+		}// else
+		final List<Element> inheritance = getChildren(binder, INHERITANCE);
+		if (inheritance.isEmpty()) {
+			return new BinderIndex.Entry(className, null, null, false);
+		}// else
+		final String superBundleId = inheritance.get(0).getAttribute(BUNDLE_ID);
+		final String superClassName = inheritance.get(0).getAttribute(CLASS);
+		final Class<?> superClass = loadBinderClass(superClassName, loader, errors);
+		if (superClass == null) {
+			return null;
+		}// else
+		return new BinderIndex.Entry(className, superBundleId, superClassName, superClass.isAssignableFrom(binderClass));
+	}
+
+	private static Class<?> loadBinderClass(String className, ClassLoader loader, List<String> errors) {
+		try {
+			final Class<?> binderClass = Class.forName(className, false, loader);
+			if (!IBinder.class.isAssignableFrom(binderClass)) {
+				errors.add(className + " does not implement " + IBinder.class.getName()); //$NON-NLS-1$
+				return null;
+			}// else
+			return binderClass;
+		} catch (ClassNotFoundException e) {
+			errors.add("Couldn't find IBinder " + className); //$NON-NLS-1$
+		} catch (LinkageError e) {
+			errors.add("Couldn't load IBinder " + className + " : " + e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return null;
+	}
+
+	private static List<Element> getChildren(Element element, String name) {
+		final List<Element> children = new ArrayList<Element>();
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE && name.equals(child.getNodeName())) {
+				children.add((Element) child);
+			}
+		}
+		return children;
+	}
+
+	private static URL[] toURLs(String classPath) throws IOException {
+		final String[] paths = classPath.split(File.pathSeparator);
+		final List<URL> urls = new ArrayList<URL>(paths.length);
+		for (final String path : paths) {
+			if (path.length() > 0) {
+				urls.add(new File(path).toURI().toURL());
+			}
+		}
+		return urls.toArray(new URL[urls.size()]);
+	}
+
+	private static void write(File indexFile, List<BinderIndex.Entry> entries) throws IOException {
+		final File folder = indexFile.getParentFile();
+		if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+			throw new IOException("Cannot create the folder " + folder); //$NON-NLS-1$
+		}// else
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(indexFile), ENCODING);
+		try {
+			BinderIndex.write(writer, entries);
+		} finally {
+			writer.close();
+		}
+	}
+}
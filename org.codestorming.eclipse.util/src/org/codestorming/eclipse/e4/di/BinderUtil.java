@@ -11,14 +11,42 @@
  ****************************************************************************/
 package org.codestorming.eclipse.e4.di;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.codestorming.eclipse.util.EclipseUtilActivator;
+import org.codestorming.eclipse.util.pde.BundleClassCache;
+import org.codestorming.util.io.FileHelper;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtension;
+import org.eclipse.core.runtime.IExtensionPoint;
 import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IRegistryChangeEvent;
+import org.eclipse.core.runtime.IRegistryChangeListener;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.e4.core.di.IInjector;
 import org.osgi.framework.Bundle;
 
 /**
@@ -26,114 +54,428 @@ import org.osgi.framework.Bundle;
  * 
  * @author Thaedrik <thaedrik@gmail.com>
  */
+@SuppressWarnings("restriction")
 public class BinderUtil {
 
+	private static final String NAMESPACE = "org.codestorming.eclipse.util";//$NON-NLS-1$
+	private static final String EXTENSION_POINT_NAME = "binder";//$NON-NLS-1$
+
+	// Resolved binders per registry
+	private static final Map<IExtensionRegistry, BinderGraph> graphs = new WeakHashMap<IExtensionRegistry, BinderGraph>();
+
 	// Suppressing default constructor, ensuring non-instantiability
 	private BinderUtil() {}
 
 	/**
-	 * Retrieve the registered {@link IBinder binders} and load the necessary instances of
-	 * these binders.
+	 * Retrieve the registered {@link IBinder binders}.
+	 * <p>
+	 * The binders are resolved and instantiated once per registry, then shared until the
+	 * contributions to the {@link IBinder#EXTENSION_POINT_ID binder extension point}
+	 * change.
 	 * 
 	 * @param registry Extension registry (must not be {@code null}).
-	 * @return new instances of the registered {@link IBinder binders}.
+	 * @return the shared instances of the registered {@link IBinder binders}, in a new
+	 *         list.
 	 */
 	public static List<IBinder> getBinders(IExtensionRegistry registry) {
+		return new ArrayList<IBinder>(getGraph(registry).binders);
+	}
+
+	/**
+	 * Configures the given injector with the registered {@link IBinder binders}.
+	 * <p>
+	 * A binder inheriting from another binder it does not extend is configured after it.
+	 * The binders having no such dependency between them are configured in parallel, but
+	 * their bindings are added to the injector in the order of the registry, the last
+	 * binding of a class replacing the previous ones.
+	 * 
+	 * @param injector The injector to configure (must not be {@code null}).
+	 * @param registry Extension registry (must not be {@code null}).
+	 * @since 3.1
+	 */
+	public static void configure(IInjector injector, IExtensionRegistry registry) {
+		Assert.isNotNull(injector);
+		final List<List<IBinder>> levels = getGraph(registry).levels;
+		ExecutorService executor = null;
+		try {
+			for (final List<IBinder> level : levels) {
+				if (level.size() > 1 && executor == null) {
+					executor = newExecutor();
+				}
+				configure(injector, level, executor);
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Loads in background the classes of the registered {@link IBinder binders}, so that
+	 * {@link #getBinders(IExtensionRegistry)} does not pay the class loading.
+	 * 
+	 * @param registry Extension registry (must not be {@code null}).
+	 * @return the scheduled {@link Job}.
+	 * @since 3.1
+	 */
+	public static Job warmUp(IExtensionRegistry registry) {
 		Assert.isNotNull(registry);
-		final List<BinderElement> binderElements = internalGetAllBinders(registry);
+		return BundleClassCache.warmUp(registry.getConfigurationElementsFor(IBinder.EXTENSION_POINT_ID), "class");//$NON-NLS-1$
+	}
+
+	/**
+	 * Loads in the current thread the classes of the registered {@link IBinder binders}.
+	 * 
+	 * @param registry Extension registry (must not be {@code null}).
+	 * @param activeBundlesOnly {@code true} to skip the binders of the bundles not active
+	 *        yet, leaving their lazy activation untouched.
+	 * @param monitor The progress monitor, may be {@code null}.
+	 * @since 3.1
+	 * @see BundleClassCache#load(IConfigurationElement[], String, boolean, IProgressMonitor)
+	 */
+	public static void loadClasses(IExtensionRegistry registry, boolean activeBundlesOnly, IProgressMonitor monitor) {
+		Assert.isNotNull(registry);
+		BundleClassCache.load(registry.getConfigurationElementsFor(IBinder.EXTENSION_POINT_ID), "class",//$NON-NLS-1$
+				activeBundlesOnly, monitor);
+	}
+
+	private static BinderGraph getGraph(IExtensionRegistry registry) {
+		Assert.isNotNull(registry);
+		synchronized (graphs) {
+			final BinderGraph graph = graphs.get(registry);
+			if (graph != null) {
+				return graph;
+			}
+		}
+		// Instantiating the binders outside the lock, listening to the changes meanwhile
+		final BinderGraph newGraph = new BinderGraph(registry);
+		registry.addRegistryChangeListener(newGraph, NAMESPACE);
+		loadGraph(newGraph, internalGetAllBinders(registry));
+		synchronized (graphs) {
+			final BinderGraph graph = graphs.get(registry);
+			if (graph != null || newGraph.invalidated) {
+				registry.removeRegistryChangeListener(newGraph);
+				// An invalidated graph is still valid for the current caller
+				return graph != null ? graph : newGraph;
+			}// else
+			graphs.put(registry, newGraph);
+			return newGraph;
+		}
+	}
+
+	private static void loadGraph(BinderGraph graph, List<BinderElement> binderElements) {
 		// Removing unecessary binders
-		for (final BinderElement binderElement : binderElements.toArray(new BinderElement[0])) {
-			if (binderElement.superBinderClass != null
-					&& binderElement.superBinderClass.isAssignableFrom(binderElement.binderClass)) {
-				final ListIterator<BinderElement> iter = binderElements.listIterator();
-				while (iter.hasNext()) {
-					if (iter.next().binderClass == binderElement.superBinderClass) {
-						iter.remove();
-						break;
-					}
-				}
+		final Set<String> superseded = new HashSet<String>();
+		for (final BinderElement binderElement : binderElements) {
+			if (binderElement.extendsSuper) {
+				superseded.add(binderElement.superClassName);
 			}
 		}
 		// Loading binders
-		final List<IBinder> binders = new ArrayList<IBinder>();
+		final Map<String, BinderElement> loaded = new LinkedHashMap<String, BinderElement>();
 		for (final BinderElement binderElement : binderElements) {
+			if (superseded.contains(binderElement.className) || loaded.containsKey(binderElement.className)) {
+				continue;
+			}// else
+			if (binderElement.binderClass == null) {
+				binderElement.binderClass = findBinderClass(binderElement.bundleId, binderElement.className);
+				if (binderElement.binderClass == null) {
+					continue;
+				}
+			}
 			try {
-				final Object binder = binderElement.binderClass.newInstance();
-				binders.add((IBinder) binder);
+				binderElement.binder = binderElement.binderClass.newInstance();
+				loaded.put(binderElement.className, binderElement);
 			} catch (InstantiationException e) {
-				System.err.println("Couldn't instantiate " + binderElement.binderClass.getName() //$NON-NLS-1$
-						+ " : has it a public default constructor ?");//$NON-NLS-1$
+				log("Couldn't instantiate " + binderElement.className //$NON-NLS-1$
+						+ " : has it a public default constructor ?", e);//$NON-NLS-1$
 			} catch (IllegalAccessException e) {
-				System.err.println("Couldn't instantiate " + binderElement.binderClass.getName() //$NON-NLS-1$
-						+ " : constructor is it public ?");//$NON-NLS-1$
+				log("Couldn't instantiate " + binderElement.className //$NON-NLS-1$
+						+ " : constructor is it public ?", e);//$NON-NLS-1$
+			}
+		}
+		// Ordering the binders by levels of inheritance
+		final List<IBinder> binders = new ArrayList<IBinder>(loaded.size());
+		final List<List<IBinder>> levels = new ArrayList<List<IBinder>>();
+		for (final BinderElement binderElement : loaded.values()) {
+			final int level = getLevel(binderElement, loaded);
+			while (levels.size() <= level) {
+				levels.add(new ArrayList<IBinder>());
 			}
+			levels.get(level).add(binderElement.binder);
+			binders.add(binderElement.binder);
+		}
+		graph.binders = binders;
+		graph.levels = levels;
+	}
+
+	private static int getLevel(BinderElement binderElement, Map<String, BinderElement> loaded) {
+		// Following the inheritance chain up to a known level, a root or a cycle
+		final List<BinderElement> chain = new ArrayList<BinderElement>();
+		BinderElement current = binderElement;
+		int level = -1;
+		while (current != null) {
+			if (current.level >= 0) {
+				level = current.level;
+				break;
+			} else if (current.level == BinderElement.VISITING) {
+				// An inheritance cycle puts its binders on the first level
+				final List<BinderElement> cycle = chain.subList(chain.indexOf(current), chain.size());
+				EclipseUtilActivator.getDefault().log("Inheritance cycle between the binders " + toString(cycle), //$NON-NLS-1$
+						IStatus.WARNING);
+				for (final BinderElement element : cycle) {
+					element.level = 0;
+				}
+				cycle.clear();
+				level = 0;
+				break;
+			}// else
+			current.level = BinderElement.VISITING;
+			chain.add(current);
+			current = current.superClassName != null ? loaded.get(current.superClassName) : null;
+		}
+		for (int i = chain.size() - 1; i >= 0; i--) {
+			chain.get(i).level = ++level;
+		}
+		return binderElement.level;
+	}
+
+	private static String toString(List<BinderElement> binderElements) {
+		final StringBuilder builder = new StringBuilder();
+		for (final BinderElement binderElement : binderElements) {
+			if (builder.length() > 0) {
+				builder.append(", "); //$NON-NLS-1$
+			}
+			builder.append(binderElement.className);
+		}
+		return builder.toString();
+	}
+
+	private static void configure(IInjector injector, List<IBinder> binders, ExecutorService executor) {
+		if (binders.isEmpty()) {
+			return;
+		}// else
+		// The other binders record their bindings, added afterwards in the registry order
+		final List<BindingRecorder> recorders = new ArrayList<BindingRecorder>(binders.size() - 1);
+		final List<Future<?>> futures = new ArrayList<Future<?>>(binders.size() - 1);
+		for (final IBinder binder : binders.subList(1, binders.size())) {
+			final BindingRecorder recorder = new BindingRecorder(injector);
+			recorders.add(recorder);
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					binder.configure(recorder.getRecordingInjector());
+				}
+			}));
+		}
+		// Configuring the first binder in the current thread
+		RuntimeException failure = null;
+		try {
+			binders.get(0).configure(injector);
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		boolean interrupted = false;
+		for (int i = 0; i < futures.size(); i++) {
+			while (true) {
+				try {
+					futures.get(i).get();
+					if (failure == null) {
+						recorders.get(i).replay();
+					}
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					} else if (failure == null) {
+						failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+								: new IllegalStateException(e.getCause());
+					}
+					break;
+				} catch (RuntimeException e) {
+					failure = e;
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private static ExecutorService newExecutor() {
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "Binder configuration " + count.incrementAndGet()); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private static void invalidate(BinderGraph graph) {
+		final IExtensionRegistry registry = graph.registry.get();
+		synchronized (graphs) {
+			graph.invalidated = true;
+			if (registry != null && graphs.get(registry) == graph) {
+				graphs.remove(registry);
+			}
+		}
+		if (registry != null) {
+			registry.removeRegistryChangeListener(graph);
 		}
-		return binders;
 	}
 
-	@SuppressWarnings("unchecked")
 	private static List<BinderElement> internalGetAllBinders(IExtensionRegistry registry) {
-		IConfigurationElement[] elements = registry.getConfigurationElementsFor(IBinder.EXTENSION_POINT_ID);
 		final List<BinderElement> binderElements = new ArrayList<BinderElement>();
-		for (final IConfigurationElement element : elements) {
-			final String binderName = element.getAttribute("class");//$NON-NLS-1$
-			final IConfigurationElement[] inheritance = element.getChildren("inheritance");//$NON-NLS-1$
-			final Class<?> binderClass = findBinderClass(element, binderName);
-			Class<?> superBinderClass = null;
-			if (binderClass != null) {
-				if (inheritance.length > 0) {
-					final String superBinderBundle = inheritance[0].getAttribute("bundleId");//$NON-NLS-1$
-					final String superBinderName = inheritance[0].getAttribute("class");//$NON-NLS-1$
-					try {
-						superBinderClass = findBinderClass(superBinderBundle, superBinderName);
-					} catch (ClassNotFoundException e) {
-						System.err.println("Couldn't find IBinder " + superBinderName //$NON-NLS-1$
-								+ " in bundle " + superBinderBundle);//$NON-NLS-1$
+		final IExtensionPoint extensionPoint = registry.getExtensionPoint(IBinder.EXTENSION_POINT_ID);
+		if (extensionPoint == null) {
+			return binderElements;
+		}// else
+		// Whether the contributing bundles provide a binder index
+		final Map<String, Boolean> indexedBundles = new HashMap<String, Boolean>();
+		for (final IExtension extension : extensionPoint.getExtensions()) {
+			final String bundleId = extension.getContributor().getName();
+			Boolean indexed = indexedBundles.get(bundleId);
+			if (indexed == null) {
+				final List<BinderIndex.Entry> entries = readIndex(bundleId);
+				indexed = Boolean.valueOf(entries != null);
+				indexedBundles.put(bundleId, indexed);
+				if (entries != null) {
+					for (final BinderIndex.Entry entry : entries) {
+						binderElements.add(new BinderElement(bundleId, entry.className, entry.superClassName,
+								entry.extendsSuper));
 					}
 				}
-				if (IBinder.class.isAssignableFrom(binderClass)
-						&& (superBinderClass == null || IBinder.class.isAssignableFrom(superBinderClass))) {
-					binderElements.add(new BinderElement((Class<? extends IBinder>) binderClass,
-							(Class<? extends IBinder>) superBinderClass));
+			}
+			if (!indexed.booleanValue()) {
+				for (final IConfigurationElement element : extension.getConfigurationElements()) {
+					final BinderElement binderElement = resolveBinder(bundleId, element);
+					if (binderElement != null) {
+						binderElements.add(binderElement);
+					}
 				}
 			}
 		}
 		return binderElements;
 	}
 
-	private static Class<?> findBinderClass(IConfigurationElement element, String name) {
-		Class<?> binderClass = null;
+	private static List<BinderIndex.Entry> readIndex(String bundleId) {
+		final Bundle bundle = Platform.getBundle(bundleId);
+		final URL index = bundle != null ? bundle.getEntry(BinderIndex.LOCATION) : null;
+		if (index == null) {
+			return null;
+		}// else
+		Reader reader = null;
 		try {
-			binderClass = Class.forName(name);
-		} catch (ClassNotFoundException e) {
-			// Trying another way
-			final String bundleId = element.getContributor().getName();
+			reader = new InputStreamReader(index.openStream(), "UTF-8");//$NON-NLS-1$
+			return BinderIndex.read(reader);
+		} catch (IOException e) {
+			log("Couldn't read the binder index of the bundle " + bundleId, e);//$NON-NLS-1$
+			return null;
+		} finally {
+			FileHelper.close(reader);
+		}
+	}
+
+	private static BinderElement resolveBinder(String bundleId, IConfigurationElement element) {
+		final String binderName = element.getAttribute("class");//$NON-NLS-1$
+		final IConfigurationElement[] inheritance = element.getChildren("inheritance");//$NON-NLS-1$
+		final Class<? extends IBinder> binderClass = findBinderClass(bundleId, binderName);
+		if (binderClass == null) {
+			return null;
+		}// else
+		String superBinderName = null;
+		boolean extendsSuper = false;
+		if (inheritance.length > 0) {
+			final String superBinderBundle = inheritance[0].getAttribute("bundleId");//$NON-NLS-1$
+			superBinderName = inheritance[0].getAttribute("class");//$NON-NLS-1$
 			try {
-				binderClass = findBinderClass(bundleId, name);
-			} catch (ClassNotFoundException e1) {
-				System.err.println("Couldn't find IBinder " + name);//$NON-NLS-1$
+				final Class<?> superBinderClass = BundleClassCache.loadClass(superBinderBundle, superBinderName);
+				if (!IBinder.class.isAssignableFrom(superBinderClass)) {
+					return null;
+				}// else
+				extendsSuper = superBinderClass.isAssignableFrom(binderClass);
+			} catch (ClassNotFoundException e) {
+				log("Couldn't find IBinder " + superBinderName //$NON-NLS-1$
+						+ " in bundle " + superBinderBundle, e);//$NON-NLS-1$
 			}
 		}
-		return binderClass;
+		final BinderElement binderElement = new BinderElement(bundleId, binderName, superBinderName, extendsSuper);
+		binderElement.binderClass = binderClass;
+		return binderElement;
 	}
 
-	private static Class<?> findBinderClass(String bundleId, String name) throws ClassNotFoundException {
-		Class<?> binderClass = null;
-		final Bundle bundle = Platform.getBundle(bundleId);
-		if (bundle != null) {
-			binderClass = bundle.loadClass(name);
+	@SuppressWarnings("unchecked")
+	private static Class<? extends IBinder> findBinderClass(String bundleId, String name) {
+		try {
+			final Class<?> binderClass = BundleClassCache.loadClass(bundleId, name);
+			if (IBinder.class.isAssignableFrom(binderClass)) {
+				return (Class<? extends IBinder>) binderClass;
+			}// else
+			log(name + " is not an IBinder", null);//$NON-NLS-1$
+		} catch (ClassNotFoundException e) {
+			log("Couldn't find IBinder " + name, e);//$NON-NLS-1$
+		}
+		return null;
+	}
+
+	private static void log(String message, Exception exception) {
+		EclipseUtilActivator.getDefault().log(message, IStatus.ERROR, exception);
+	}
+
+	/**
+	 * Binders resolved from a registry, invalidated when the binder contributions change.
+	 * <p>
+	 * The registry is weakly referenced, the graph being the value of the registry in the
+	 * weak map of the graphs.
+	 */
+	private static class BinderGraph implements IRegistryChangeListener {
+
+		final Reference<IExtensionRegistry> registry;
+		List<IBinder> binders;
+		List<List<IBinder>> levels;
+		boolean invalidated;
+
+		BinderGraph(IExtensionRegistry registry) {
+			this.registry = new WeakReference<IExtensionRegistry>(registry);
+		}
+
+		@Override
+		public void registryChanged(IRegistryChangeEvent event) {
+			if (event.getExtensionDeltas(NAMESPACE, EXTENSION_POINT_NAME).length > 0) {
+				invalidate(this);
+			}
 		}
-		return binderClass;
 	}
 
 	private static class BinderElement {
 
-		final Class<? extends IBinder> binderClass;
-		final Class<? extends IBinder> superBinderClass;
+		static final int UNVISITED = -1;
+		static final int VISITING = -2;
+
+		final String bundleId;
+		final String className;
+		final String superClassName;
+		final boolean extendsSuper;
+		Class<? extends IBinder> binderClass;
+		IBinder binder;
+		int level = UNVISITED;
 
-		public BinderElement(Class<? extends IBinder> binderClass, Class<? extends IBinder> superBinderClass) {
-			this.binderClass = binderClass;
-			this.superBinderClass = superBinderClass;
+		public BinderElement(String bundleId, String className, String superClassName, boolean extendsSuper) {
+			this.bundleId = bundleId;
+			this.className = className;
+			this.superClassName = superClassName;
+			this.extendsSuper = extendsSuper;
 		}
 	}
 }
@@ -0,0 +1,260 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.e4.di;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codestorming.eclipse.util.EclipseUtilActivator;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.e4.core.di.IInjector;
+import org.eclipse.e4.core.di.InjectionException;
+import org.eclipse.e4.core.di.suppliers.PrimaryObjectSupplier;
+
+/**
+ * Metrics of the instantiations made through
+ * {@link #make(IInjector, Class, PrimaryObjectSupplier)}.
+ * <p>
+ * The metrics are an opt-in wrapper : only the instantiations the callers make through
+ * {@code make} are measured. The objects created by the injector itself, like the parts
+ * created by the workbench, and the bindings registered by the {@link Binder binders}
+ * are not measured, as the injector offers no hook around them.
+ * <p>
+ * For each class, records the number of instances made, their cumulative time, the
+ * number of failures and the maximum depth at which the class was made. Instantiations
+ * slower than the {@link #setSlowThreshold(long) threshold} and dependency cycles are
+ * flagged.
+ * <p>
+ * The depth and the cycles only account for nested calls to {@code make}, as made by the
+ * factories and providers calling it. The dependencies the injector resolves by itself
+ * are part of the time of the instance requiring them, and a recursion between them is
+ * reported by the injector as an {@link InjectionException}, counted as a failure.
+ * <p>
+ * The metrics are disabled by default. They are enabled through the
+ * {@value #DEBUG_OPTION} debug option, the {@value #DEBUG_OPTION} system property, or
+ * {@link #setEnabled(boolean)}. When disabled, {@code make} only delegates to the
+ * injector.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+@SuppressWarnings("restriction")
+public final class BindingMetrics {
+
+	/**
+	 * Debug option enabling the metrics.
+	 */
+	public static final String DEBUG_OPTION = "org.codestorming.eclipse.util/debug/bindings"; //$NON-NLS-1$
+
+	/**
+	 * Default threshold (in milliseconds) above which an instantiation is slow.
+	 */
+	public static final long DEFAULT_SLOW_THRESHOLD = 50;
+
+	private static volatile boolean enabled = Boolean.getBoolean(DEBUG_OPTION)
+			|| Boolean.parseBoolean(Platform.getDebugOption(DEBUG_OPTION));
+
+	private static volatile long slowThreshold = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_THRESHOLD);
+
+	private static final ConcurrentMap<Class<?>, ClassMetrics> metrics = new ConcurrentHashMap<Class<?>, ClassMetrics>();
+
+	// Classes being instantiated by the current thread
+	private static final ThreadLocal<List<Class<?>>> stack = new ThreadLocal<List<Class<?>>>() {
+		@Override
+		protected List<Class<?>> initialValue() {
+			return new ArrayList<Class<?>>();
+		}
+	};
+
+	// Suppressing default constructor, ensuring non-instantiability
+	private BindingMetrics() {}
+
+	/**
+	 * Indicates if the metrics are enabled.
+	 * 
+	 * @return {@code true} if the metrics are enabled.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables the metrics.
+	 * 
+	 * @param enabled {@code true} to enable the metrics.
+	 */
+	public static void setEnabled(boolean enabled) {
+		BindingMetrics.enabled = enabled;
+	}
+
+	/**
+	 * Sets the threshold (in milliseconds) above which an instantiation is slow.
+	 * 
+	 * @param threshold The threshold, in milliseconds.
+	 */
+	public static void setSlowThreshold(long threshold) {
+		slowThreshold = TimeUnit.MILLISECONDS.toNanos(threshold);
+	}
+
+	/**
+	 * Creates an instance of the given class with the given injector, measuring its
+	 * instantiation when the metrics are enabled.
+	 * <p>
+	 * A class being instantiated again while its own dependencies are resolved is
+	 * reported as a cycle, and the instantiation fails.
+	 * 
+	 * @param injector The injector.
+	 * @param clazz The class to instantiate.
+	 * @param objectSupplier The primary object supplier.
+	 * @return the new instance.
+	 * @throws InjectionException if the instantiation failed.
+	 */
+	public static <T> T make(IInjector injector, Class<T> clazz, PrimaryObjectSupplier objectSupplier) {
+		if (!enabled) {
+			return injector.make(clazz, objectSupplier);
+		}// else
+		final List<Class<?>> classes = stack.get();
+		final ClassMetrics classMetrics = getMetrics(clazz);
+		if (classes.contains(clazz)) {
+			classMetrics.cycles.incrementAndGet();
+			final String cycle = toString(classes.subList(classes.indexOf(clazz), classes.size()), clazz);
+			EclipseUtilActivator.getDefault().log("Dependency cycle : " + cycle, IStatus.WARNING); //$NON-NLS-1$
+			throw new InjectionException("Dependency cycle : " + cycle); //$NON-NLS-1$
+		}// else
+		classMetrics.updateDepth(classes.size());
+		classes.add(clazz);
+		final long start = System.nanoTime();
+		boolean made = false;
+		try {
+			final T instance = injector.make(clazz, objectSupplier);
+			made = true;
+			return instance;
+		} finally {
+			final long time = System.nanoTime() - start;
+			classes.remove(classes.size() - 1);
+			if (made) {
+				classMetrics.instances.incrementAndGet();
+			} else {
+				classMetrics.failures.incrementAndGet();
+			}
+			classMetrics.time.addAndGet(time);
+			if (time > slowThreshold) {
+				classMetrics.slow.incrementAndGet();
+				EclipseUtilActivator.getDefault().log(
+						"Slow instantiation of " + clazz.getName() + " : " //$NON-NLS-1$ //$NON-NLS-2$
+								+ TimeUnit.NANOSECONDS.toMillis(time) + " ms", IStatus.WARNING); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Forgets the recorded metrics.
+	 */
+	public static void reset() {
+		metrics.clear();
+	}
+
+	/**
+	 * Writes a report of the recorded metrics, one line per class, the slowest classes
+	 * first.
+	 * 
+	 * @param writer The writer receiving the report.
+	 * @throws IOException if the report cannot be written.
+	 */
+	public static void writeReport(Writer writer) throws IOException {
+		final List<ClassMetrics> all = new ArrayList<ClassMetrics>(metrics.values());
+		Collections.sort(all, new Comparator<ClassMetrics>() {
+			@Override
+			public int compare(ClassMetrics m1, ClassMetrics m2) {
+				final long t1 = m1.time.get();
+				final long t2 = m2.time.get();
+				return t1 < t2 ? 1 : t1 > t2 ? -1 : m1.clazz.getName().compareTo(m2.clazz.getName());
+			}
+		});
+		writer.write("class\tinstances\tfailures\ttime (ms)\tmax depth\tslow\tcycles\n"); //$NON-NLS-1$
+		for (final ClassMetrics classMetrics : all) {
+			writer.write(classMetrics.clazz.getName() + '\t' + classMetrics.instances + '\t'
+					+ classMetrics.failures + '\t' + TimeUnit.NANOSECONDS.toMillis(classMetrics.time.get())
+					+ '\t' + classMetrics.maxDepth + '\t' + classMetrics.slow + '\t' + classMetrics.cycles + '\n');
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Returns a report of the recorded metrics.
+	 * 
+	 * @return a report of the recorded metrics.
+	 * @see #writeReport(Writer)
+	 */
+	public static String getReport() {
+		final StringWriter writer = new StringWriter();
+		try {
+			writeReport(writer);
+		} catch (IOException e) {
+			// Cannot happen with a StringWriter
+		}
+		return writer.toString();
+	}
+
+	private static ClassMetrics getMetrics(Class<?> clazz) {
+		ClassMetrics classMetrics = metrics.get(clazz);
+		if (classMetrics == null) {
+			final ClassMetrics newMetrics = new ClassMetrics(clazz);
+			classMetrics = metrics.putIfAbsent(clazz, newMetrics);
+			if (classMetrics == null) {
+				classMetrics = newMetrics;
+			}
+		}
+		return classMetrics;
+	}
+
+	private static String toString(List<Class<?>> classes, Class<?> last) {
+		final StringBuilder builder = new StringBuilder();
+		for (final Class<?> clazz : classes) {
+			builder.append(clazz.getName()).append(" -> "); //$NON-NLS-1$
+		}
+		return builder.append(last.getName()).toString();
+	}
+
+	private static final class ClassMetrics {
+
+		final Class<?> clazz;
+		final AtomicLong instances = new AtomicLong();
+		final AtomicLong failures = new AtomicLong();
+		final AtomicLong time = new AtomicLong();
+		final AtomicLong slow = new AtomicLong();
+		final AtomicLong cycles = new AtomicLong();
+		final AtomicInteger maxDepth = new AtomicInteger();
+
+		ClassMetrics(Class<?> clazz) {
+			this.clazz = clazz;
+		}
+
+		void updateDepth(int depth) {
+			int max;
+			while (depth > (max = maxDepth.get()) && !maxDepth.compareAndSet(max, depth)) {
+				// Retrying
+			}
+		}
+	}
+}
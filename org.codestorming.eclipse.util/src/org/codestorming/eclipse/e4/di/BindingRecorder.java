@@ -0,0 +1,168 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.e4.di;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.e4.core.di.IBinding;
+import org.eclipse.e4.core.di.IInjector;
+
+/**
+ * Records the bindings a {@link IBinder binder} adds to an {@link IInjector}, so that
+ * they can be added later to the injector, in a given order.
+ * <p>
+ * The {@link IBinding bindings} returned to the binder record the calls made on them
+ * (like {@code named} or {@code implementedBy}), and forward them to the actual bindings
+ * once {@link #replay() replayed}. The other calls to the recording injector are
+ * delegated to the actual injector.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+@SuppressWarnings("restriction")
+final class BindingRecorder implements InvocationHandler {
+
+	private static final String ADD_BINDING = "addBinding"; //$NON-NLS-1$
+
+	private final IInjector injector;
+
+	private final IInjector recordingInjector;
+
+	private final List<RecordedBinding> bindings = new ArrayList<RecordedBinding>();
+
+	/**
+	 * Creates a new {@code BindingRecorder}.
+	 * 
+	 * @param injector The injector receiving the bindings on {@link #replay()}.
+	 */
+	BindingRecorder(IInjector injector) {
+		this.injector = injector;
+		recordingInjector = (IInjector) Proxy.newProxyInstance(IInjector.class.getClassLoader(),
+				new Class<?>[] {IInjector.class}, this);
+	}
+
+	/**
+	 * Returns the injector recording the bindings, to give to the binder.
+	 * 
+	 * @return the recording injector.
+	 */
+	IInjector getRecordingInjector() {
+		return recordingInjector;
+	}
+
+	/**
+	 * Adds the recorded bindings to the injector, in the order they were recorded.
+	 */
+	synchronized void replay() {
+		for (final RecordedBinding binding : bindings) {
+			binding.replay(injector);
+		}
+		bindings.clear();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			return invokeObjectMethod(proxy, method, args);
+		}// else
+		if (ADD_BINDING.equals(method.getName()) && args != null && args.length == 1) {
+			final RecordedBinding binding = new RecordedBinding(method, args[0]);
+			synchronized (this) {
+				bindings.add(binding);
+			}
+			return binding.proxy;
+		}// else
+		return forward(injector, method, args);
+	}
+
+	private static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+		if ("equals".equals(method.getName())) { //$NON-NLS-1$
+			return Boolean.valueOf(proxy == args[0]);
+		} else if ("hashCode".equals(method.getName())) { //$NON-NLS-1$
+			return Integer.valueOf(System.identityHashCode(proxy));
+		}// else
+		return proxy.getClass().getName() + '@' + Integer.toHexString(System.identityHashCode(proxy));
+	}
+
+	private static Object forward(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * A binding added to the recording injector.
+	 */
+	private static final class RecordedBinding implements InvocationHandler {
+
+		final IBinding proxy;
+
+		// The addBinding method of the injector and its argument
+		private final Method addBinding;
+		private final Object argument;
+
+		// Calls made on the binding before its replay
+		private final List<Method> methods = new ArrayList<Method>();
+		private final List<Object[]> arguments = new ArrayList<Object[]>();
+
+		// The actual binding, once replayed
+		private IBinding binding;
+
+		RecordedBinding(Method addBinding, Object argument) {
+			this.addBinding = addBinding;
+			this.argument = argument;
+			proxy = (IBinding) Proxy.newProxyInstance(IBinding.class.getClassLoader(),
+					new Class<?>[] {IBinding.class}, this);
+		}
+
+		synchronized void replay(IInjector injector) {
+			try {
+				IBinding replayed = (IBinding) forward(injector, addBinding, new Object[] {argument});
+				for (int i = 0; i < methods.size(); i++) {
+					replayed = (IBinding) forward(replayed, methods.get(i), arguments.get(i));
+				}
+				binding = replayed;
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+			methods.clear();
+			arguments.clear();
+		}
+
+		@Override
+		public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				return invokeObjectMethod(proxy, method, args);
+			}// else
+			if (binding != null) {
+				return forward(binding, method, args);
+			}// else
+			if (!IBinding.class.isAssignableFrom(method.getReturnType())) {
+				throw new IllegalStateException("The binding is not added to the injector yet"); //$NON-NLS-1$
+			}// else
+			methods.add(method);
+			arguments.add(args);
+			return proxy;
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.e4.handler;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.codestorming.eclipse.util.WorkbenchPreferenceNode;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.preference.IPreferenceNode;
+import org.eclipse.jface.preference.PreferenceManager;
+
+/**
+ * Keyword index of the nodes of a {@link PreferenceManager}, built in background from
+ * the nodes labels and their {@code keywordReference}s, without instantiating the pages.
+ * <p>
+ * A search returns the ids of the matching nodes and of their ancestors. Until the
+ * index is built, searches fall back to matching the nodes labels.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+final class PreferenceSearchIndex {
+
+	static final String KEYWORDS_EXTENSION_POINT_NAME = "keywords"; //$NON-NLS-1$
+	private static final String KEYWORDS_EXTENSION_POINT = "org.eclipse.ui." + KEYWORDS_EXTENSION_POINT_NAME; //$NON-NLS-1$
+	private static final String KEYWORD_ATTR_ID = "id"; //$NON-NLS-1$
+	private static final String KEYWORD_ATTR_LABEL = "label"; //$NON-NLS-1$
+
+	private final PreferenceManager manager;
+	private final IExtensionRegistry registry;
+
+	private volatile Index index;
+
+	/**
+	 * Creates a new {@code PreferenceSearchIndex}.
+	 * 
+	 * @param manager The preference manager to index.
+	 * @param registry The registry containing the keywords extensions.
+	 */
+	PreferenceSearchIndex(PreferenceManager manager, IExtensionRegistry registry) {
+		this.manager = manager;
+		this.registry = registry;
+	}
+
+	/**
+	 * Schedules the building of this index in a background {@link Job}.
+	 * 
+	 * @return the scheduled {@link Job}.
+	 */
+	Job schedule() {
+		final Job job = new Job("Indexing preference pages") { //$NON-NLS-1$
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				index = buildIndex();
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.setPriority(Job.DECORATE);
+		job.schedule();
+		return job;
+	}
+
+	/**
+	 * Indicates if this index has been built.
+	 * 
+	 * @return {@code true} if this index has been built;<br>
+	 *         {@code false} otherwise.
+	 */
+	boolean isReady() {
+		return index != null;
+	}
+
+	/**
+	 * Returns the ids of the nodes having, for each word of the given text, a word of
+	 * their label or keywords starting with it, and the ids of their ancestors.
+	 * 
+	 * @param text The searched text.
+	 * @return the ids of the matching nodes, or {@code null} if the text contains no
+	 *         word.
+	 */
+	Set<String> search(String text) {
+		final List<String> words = tokenize(text);
+		if (words.isEmpty()) {
+			return null;
+		}// else
+		final Index currentIndex = index;
+		return currentIndex != null ? currentIndex.search(words) : searchLabels(words);
+	}
+
+	/**
+	 * Searches in the labels of the nodes, used while the index is being built.
+	 */
+	private Set<String> searchLabels(List<String> words) {
+		final Set<String> result = new HashSet<String>();
+		searchLabels(manager.getRoot().getSubNodes(), words, result);
+		return result;
+	}
+
+	private static boolean searchLabels(IPreferenceNode[] nodes, List<String> words, Set<String> result) {
+		boolean found = false;
+		for (final IPreferenceNode node : nodes) {
+			final List<String> labelWords = tokenize(node.getLabelText());
+			boolean matches = true;
+			for (final String word : words) {
+				matches &= startsOneOf(word, labelWords);
+			}
+			if (searchLabels(node.getSubNodes(), words, result) || matches) {
+				result.add(node.getId());
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	private static boolean startsOneOf(String prefix, List<String> words) {
+		for (final String word : words) {
+			if (word.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Index buildIndex() {
+		// Keyword labels by id
+		final Map<String, String> keywords = new HashMap<String, String>();
+		for (final IConfigurationElement element : registry.getConfigurationElementsFor(KEYWORDS_EXTENSION_POINT)) {
+			final String id = element.getAttribute(KEYWORD_ATTR_ID);
+			final String label = element.getAttribute(KEYWORD_ATTR_LABEL);
+			if (id != null && label != null) {
+				keywords.put(id, label);
+			}
+		}
+		final List<String> ids = new ArrayList<String>();
+		final List<Integer> parents = new ArrayList<Integer>();
+		final Map<String, BitSet> postings = new TreeMap<String, BitSet>();
+		indexNodes(manager.getRoot().getSubNodes(), -1, keywords, ids, parents, postings);
+
+		final Index newIndex = new Index();
+		newIndex.ids = ids.toArray(new String[ids.size()]);
+		newIndex.parents = new int[parents.size()];
+		for (int i = 0; i < newIndex.parents.length; i++) {
+			newIndex.parents[i] = parents.get(i);
+		}
+		newIndex.words = postings.keySet().toArray(new String[postings.size()]);
+		newIndex.postings = postings.values().toArray(new BitSet[postings.size()]);
+		return newIndex;
+	}
+
+	private static void indexNodes(IPreferenceNode[] nodes, int parent, Map<String, String> keywords, List<String> ids,
+			List<Integer> parents, Map<String, BitSet> postings) {
+		for (final IPreferenceNode node : nodes) {
+			final int nodeIndex = ids.size();
+			ids.add(node.getId());
+			parents.add(parent);
+			addPostings(node.getLabelText(), nodeIndex, postings);
+			if (node instanceof WorkbenchPreferenceNode) {
+				for (final String keywordId : ((WorkbenchPreferenceNode) node).getKeywordReferences()) {
+					addPostings(keywords.get(keywordId), nodeIndex, postings);
+				}
+			}
+			indexNodes(node.getSubNodes(), nodeIndex, keywords, ids, parents, postings);
+		}
+	}
+
+	private static void addPostings(String text, int nodeIndex, Map<String, BitSet> postings) {
+		for (final String word : tokenize(text)) {
+			BitSet nodes = postings.get(word);
+			if (nodes == null) {
+				nodes = new BitSet();
+				postings.put(word, nodes);
+			}
+			nodes.set(nodeIndex);
+		}
+	}
+
+	/**
+	 * Splits the given text into lower-cased words.
+	 */
+	private static List<String> tokenize(String text) {
+		final List<String> words = new ArrayList<String>();
+		if (text == null) {
+			return words;
+		}// else
+		final String lowerText = text.toLowerCase();
+		int start = -1;
+		for (int i = 0; i <= lowerText.length(); i++) {
+			final boolean letter = i < lowerText.length() && Character.isLetterOrDigit(lowerText.charAt(i));
+			if (letter && start < 0) {
+				start = i;
+			} else if (!letter && start >= 0) {
+				words.add(lowerText.substring(start, i));
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	private static class Index {
+
+		// Nodes ids and index of their parent (-1 for the root nodes).
+		String[] ids;
+		int[] parents;
+
+		// Sorted words and the nodes containing them.
+		String[] words;
+		BitSet[] postings;
+
+		Set<String> search(List<String> searchedWords) {
+			BitSet matches = null;
+			for (final String word : searchedWords) {
+				final BitSet wordMatches = new BitSet(ids.length);
+				final int to = lowerBound(word + Character.MAX_VALUE);
+				for (int i = lowerBound(word); i < to; i++) {
+					wordMatches.or(postings[i]);
+				}
+				if (matches == null) {
+					matches = wordMatches;
+				} else {
+					matches.and(wordMatches);
+				}
+			}
+			final Set<String> result = new HashSet<String>();
+			for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+				for (int node = i; node >= 0 && result.add(ids[node]); node = parents[node]) {
+					// Adding the ancestors
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the position of the first word greater or equal to the given key.
+		 */
+		private int lowerBound(String key) {
+			int low = 0;
+			int high = words.length;
+			while (low < high) {
+				final int middle = (low + high) >>> 1;
+				if (words[middle].compareTo(key) < 0) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+}
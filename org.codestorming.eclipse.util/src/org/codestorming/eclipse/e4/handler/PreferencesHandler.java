@@ -12,18 +12,29 @@
 package org.codestorming.eclipse.e4.handler;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.codestorming.eclipse.util.WorkbenchPreferenceNode;
+import org.codestorming.eclipse.util.pde.BundleClassCache;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IRegistryChangeEvent;
+import org.eclipse.core.runtime.IRegistryChangeListener;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.e4.core.di.annotations.Execute;
 import org.eclipse.e4.core.services.log.Logger;
 import org.eclipse.e4.ui.services.IServiceConstants;
-import org.eclipse.jface.preference.IPreferenceNode;
 import org.eclipse.jface.preference.PreferenceDialog;
 import org.eclipse.jface.preference.PreferenceManager;
 import org.eclipse.jface.preference.PreferenceNode;
@@ -33,59 +44,170 @@ import org.eclipse.swt.widgets.Shell;
  * Handler for opening a {@link PreferenceDialog}.
  * <p>
  * This class is for using in Eclipse RCP applications.
+ * <p>
+ * The preference tree is built once from the contributed preference pages and shared by
+ * the dialogs until these contributions change. The pages are only instantiated when
+ * selected, and are searched through a keyword index built in background.
  *
  * @author Thaedrik <thaedrik@gmail.com>
  */
 @SuppressWarnings("restriction")
 public class PreferencesHandler {
 
-	private static final String PREF_EXTENSION_POINT = "org.eclipse.ui.preferencePages"; //$NON-NLS-1$
+	private static final String PREF_EXTENSION_NAMESPACE = "org.eclipse.ui"; //$NON-NLS-1$
+	private static final String PREF_EXTENSION_POINT_NAME = "preferencePages"; //$NON-NLS-1$
+	private static final String PREF_EXTENSION_POINT = PREF_EXTENSION_NAMESPACE + '.' + PREF_EXTENSION_POINT_NAME;
 	private static final String PREF_PAGE_ATTR_ID = "id"; //$NON-NLS-1$
 	private static final String PREF_PAGE_ATTR_NAME = "name"; //$NON-NLS-1$
 	private static final String PREF_PAGE_ATTR_CLASS = "class"; //$NON-NLS-1$
 	private static final String PREF_PAGE_ATTR_CATEGORY = "category"; //$NON-NLS-1$
+	private static final String PREF_PAGE_KEYWORD_REFERENCE = "keywordReference"; //$NON-NLS-1$
+	private static final String KEYWORD_REFERENCE_ATTR_ID = "id"; //$NON-NLS-1$
 
 	private static final char PM_SEPARATOR = '/';
 
+	private static final IRegistryChangeListener REGISTRY_LISTENER = new PreferencePagesListener();
+
+	// PreferenceManager shared by the dialogs, guarded by PreferencesHandler.class.
+	private static PreferenceManager sharedManager;
+	private static PreferenceSearchIndex sharedIndex;
+	private static IExtensionRegistry managerRegistry;
+
 	@Inject
 	private Logger logger;
 
 	@Inject
 	private IExtensionRegistry registry;
 
+	/**
+	 * Loads in background the classes of the contributed preference pages, so that
+	 * opening the preferences dialog does not pay the class loading.
+	 * 
+	 * @param registry Extension registry.
+	 * @return the scheduled {@link Job}.
+	 * @since 3.1
+	 */
+	public static Job warmUp(IExtensionRegistry registry) {
+		return BundleClassCache.warmUp(registry.getConfigurationElementsFor(PREF_EXTENSION_POINT),
+				PREF_PAGE_ATTR_CLASS);
+	}
+
+	/**
+	 * Loads in the current thread the classes of the contributed preference pages.
+	 * 
+	 * @param registry Extension registry.
+	 * @param activeBundlesOnly {@code true} to skip the pages of the bundles not active
+	 *        yet, leaving their lazy activation untouched.
+	 * @param monitor The progress monitor, may be {@code null}.
+	 * @since 3.1
+	 * @see BundleClassCache#load(IConfigurationElement[], String, boolean, IProgressMonitor)
+	 */
+	public static void loadClasses(IExtensionRegistry registry, boolean activeBundlesOnly, IProgressMonitor monitor) {
+		BundleClassCache.load(registry.getConfigurationElementsFor(PREF_EXTENSION_POINT), PREF_PAGE_ATTR_CLASS,
+				activeBundlesOnly, monitor);
+	}
+
 	@Execute
 	public void execute(@Named(IServiceConstants.ACTIVE_SHELL) Shell shell) {
-		PreferenceManager pm = createPreferenceManager();
-		PreferenceDialog dialog = new PreferenceDialog(shell, pm);
+		final PreferenceManager pm;
+		final PreferenceSearchIndex searchIndex;
+		synchronized (PreferencesHandler.class) {
+			pm = getPreferenceManager();
+			searchIndex = sharedIndex;
+		}
+		PreferenceDialog dialog = new SearchablePreferenceDialog(shell, pm, searchIndex);
 		dialog.open();
 	}
 
+	/**
+	 * Returns the {@link PreferenceManager} shared by the preference dialogs, creating it
+	 * if the contributed preference pages changed.
+	 * <p>
+	 * The search index of a new {@link PreferenceManager} is built in background.
+	 * 
+	 * @return the shared {@link PreferenceManager}.
+	 */
+	private PreferenceManager getPreferenceManager() {
+		synchronized (PreferencesHandler.class) {
+			if (sharedManager == null || managerRegistry != registry) {
+				if (managerRegistry != registry) {
+					registry.addRegistryChangeListener(REGISTRY_LISTENER, PREF_EXTENSION_NAMESPACE);
+					if (managerRegistry != null) {
+						managerRegistry.removeRegistryChangeListener(REGISTRY_LISTENER);
+					}
+					managerRegistry = registry;
+				}
+				sharedManager = createPreferenceManager();
+				sharedIndex = new PreferenceSearchIndex(sharedManager, registry);
+				sharedIndex.schedule();
+			}
+			return sharedManager;
+		}
+	}
+
 	private PreferenceManager createPreferenceManager() {
 		final PreferenceManager pm = new PreferenceManager(PM_SEPARATOR);
 		final PreferenceNodeElement[] elements = getElements();
 
+		// Indexing the nodes by id
+		final Map<String, PreferenceNodeElement> index = new HashMap<String, PreferenceNodeElement>(
+				elements.length * 2);
+		for (PreferenceNodeElement element : elements) {
+			final WorkbenchPreferenceNode node = new WorkbenchPreferenceNode(element.id, element.name, null,
+					element.bundleID, element.className);
+			node.setKeywordReferences(element.keywordReferences);
+			element.node = node;
+			index.put(element.id, element);
+		}
 		for (PreferenceNodeElement element : elements) {
-			PreferenceNode node = new WorkbenchPreferenceNode(element.id, element.name, null, element.bundleID,
-					element.className);
-			final String category = element.category;
-			if (category == null || category.length() == 0) {
-				pm.addToRoot(node);
+			element.parent = findCategory(element.category, index);
+		}
+		// Building the tree, the elements being sorted by name
+		for (PreferenceNodeElement element : elements) {
+			if (element.parent == null || isInCycle(element)) {
+				element.parent = null;
+				pm.addToRoot(element.node);
 			} else {
-				final IPreferenceNode categoryNode = pm.find(category);
-				if (categoryNode == null) {
-					pm.addToRoot(node);
-				} else {
-					categoryNode.add(node);
-				}
+				element.parent.node.add(element.node);
 			}
 		}
 
 		return pm;
 	}
 
+	/**
+	 * Returns the element of the given category, which is the path of its node.
+	 */
+	private static PreferenceNodeElement findCategory(String category, Map<String, PreferenceNodeElement> index) {
+		if (category == null) {
+			return null;
+		}// else
+		int end = category.length();
+		while (end > 0 && category.charAt(end - 1) == PM_SEPARATOR) {
+			end--;
+		}
+		final int start = category.lastIndexOf(PM_SEPARATOR, end - 1) + 1;
+		return end > start ? index.get(category.substring(start, end)) : null;
+	}
+
+	/**
+	 * Indicates if the given element is one of its own ancestors.
+	 */
+	private static boolean isInCycle(PreferenceNodeElement element) {
+		final Set<PreferenceNodeElement> ancestors = new HashSet<PreferenceNodeElement>();
+		PreferenceNodeElement ancestor = element.parent;
+		while (ancestor != null && ancestors.add(ancestor)) {
+			if (ancestor == element) {
+				return true;
+			}// else
+			ancestor = ancestor.parent;
+		}
+		return false;
+	}
+
 	private PreferenceNodeElement[] getElements() {
 		final IConfigurationElement[] extensions = registry.getConfigurationElementsFor(PREF_EXTENSION_POINT);
-		final PreferenceNodeElement[] elements = new PreferenceNodeElement[extensions.length];
+		final List<PreferenceNodeElement> elements = new ArrayList<PreferenceNodeElement>(extensions.length);
 		final int length = extensions.length;
 		for (int i = 0; i < length; i++) {
 			final PreferenceNodeElement nodeElement = new PreferenceNodeElement();
@@ -94,59 +216,66 @@ public class PreferencesHandler {
 			nodeElement.bundleID = extensions[i].getContributor().getName();
 			nodeElement.id = extensions[i].getAttribute(PREF_PAGE_ATTR_ID);
 			nodeElement.category = extensions[i].getAttribute(PREF_PAGE_ATTR_CATEGORY);
+			nodeElement.keywordReferences = getKeywordReferences(extensions[i]);
 			if (nodeElement.id != null && nodeElement.name != null && nodeElement.className != null
 					&& nodeElement.bundleID != null) {
-				elements[i] = nodeElement;
+				elements.add(nodeElement);
 			} else {
 				logger.warn(MessageFormat.format(
 						"Couldn''t load the preferences extension for the page {0}, of the plugin {1}.",
 						nodeElement.name, nodeElement.bundleID));
 			}
 		}
-		Arrays.sort(elements);
-		return elements;
+		final PreferenceNodeElement[] result = elements.toArray(new PreferenceNodeElement[elements.size()]);
+		Arrays.sort(result, new Comparator<PreferenceNodeElement>() {
+			@Override
+			public int compare(PreferenceNodeElement o1, PreferenceNodeElement o2) {
+				return o1.name.compareTo(o2.name);
+			}
+		});
+		return result;
+	}
+
+	private static String[] getKeywordReferences(IConfigurationElement extension) {
+		final IConfigurationElement[] references = extension.getChildren(PREF_PAGE_KEYWORD_REFERENCE);
+		final List<String> ids = new ArrayList<String>(references.length);
+		for (final IConfigurationElement reference : references) {
+			final String id = reference.getAttribute(KEYWORD_REFERENCE_ATTR_ID);
+			if (id != null) {
+				ids.add(id);
+			}
+		}
+		return ids.toArray(new String[ids.size()]);
+	}
+
+	/**
+	 * Forgets the shared {@link PreferenceManager} when the preference pages or keywords
+	 * extensions change.
+	 */
+	private static class PreferencePagesListener implements IRegistryChangeListener {
+
+		@Override
+		public void registryChanged(IRegistryChangeEvent event) {
+			if (event.getExtensionDeltas(PREF_EXTENSION_NAMESPACE, PREF_EXTENSION_POINT_NAME).length > 0
+					|| event.getExtensionDeltas(PREF_EXTENSION_NAMESPACE,
+							PreferenceSearchIndex.KEYWORDS_EXTENSION_POINT_NAME).length > 0) {
+				synchronized (PreferencesHandler.class) {
+					sharedManager = null;
+				}
+			}
+		}
 	}
 
-	private static class PreferenceNodeElement implements Comparable<PreferenceNodeElement> {
+	private static class PreferenceNodeElement {
 
 		String id;
 		String name;
 		String className;
 		String bundleID;
 		String category;
+		String[] keywordReferences;
 
-		@Override
-		public int compareTo(PreferenceNodeElement o) {
-			final String category = this.category;
-			if (id.equals(o.id) && name.equals(o.name) && className.equals(o.className) && bundleID.equals(o.bundleID)
-					&& (category != null && category.equals(o.category) || category == null && o.category == null)) {
-				return 0;
-			}// else
-			int thisDepth;
-			if (category == null) {
-				thisDepth = 0;
-			} else {
-				thisDepth = categoryDepth(category);
-			}
-			int otherDepth;
-			if (o.category == null) {
-				otherDepth = 0;
-			} else {
-				otherDepth = categoryDepth(o.category);
-			}
-			final int diffDepth = thisDepth - otherDepth;
-			return diffDepth != 0 ? diffDepth : name.compareTo(o.name);
-		}
-
-		private static int categoryDepth(String category) {
-			final String sep = "" + PM_SEPARATOR;
-			if (category.startsWith(sep)) {
-				category = category.substring(1, category.length());
-			}
-			if (category.endsWith(sep)) {
-				category = category.substring(0, category.length() - 1);
-			}
-			return category.split(sep).length;
-		}
+		PreferenceNode node;
+		PreferenceNodeElement parent;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.e4.handler;
+
+import java.util.Set;
+
+import org.codestorming.eclipse.util.swt.GridLayoutHelper;
+import org.eclipse.jface.preference.IPreferenceNode;
+import org.eclipse.jface.preference.PreferenceDialog;
+import org.eclipse.jface.preference.PreferenceManager;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.jface.viewers.ViewerFilter;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+
+/**
+ * {@link PreferenceDialog} with a filter field above the pages tree.
+ * <p>
+ * The filter is resolved by a {@link PreferenceSearchIndex}, so the pages are not
+ * instantiated for being searched.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+class SearchablePreferenceDialog extends PreferenceDialog {
+
+	private final PreferenceSearchIndex searchIndex;
+
+	// Ids of the displayed nodes, null if all are displayed.
+	private Set<String> matches;
+
+	/**
+	 * Creates a new {@code SearchablePreferenceDialog}.
+	 * 
+	 * @param parentShell The parent shell.
+	 * @param manager The preference manager.
+	 * @param searchIndex The search index of the preference manager.
+	 */
+	SearchablePreferenceDialog(Shell parentShell, PreferenceManager manager, PreferenceSearchIndex searchIndex) {
+		super(parentShell, manager);
+		this.searchIndex = searchIndex;
+	}
+
+	@Override
+	protected Control createTreeAreaContents(Composite parent) {
+		final Composite composite = new Composite(parent, SWT.NONE);
+		composite.setLayout(GridLayoutHelper.newGridLayout());
+		final Text filterText = new Text(composite, SWT.SEARCH | SWT.ICON_CANCEL | SWT.BORDER);
+		filterText.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+		final Control tree = super.createTreeAreaContents(composite);
+		tree.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+		layoutTreeAreaControl(composite);
+
+		getTreeViewer().addFilter(new ViewerFilter() {
+			@Override
+			public boolean select(Viewer viewer, Object parentElement, Object element) {
+				final Set<String> displayed = matches;
+				return displayed == null || element instanceof IPreferenceNode
+						&& displayed.contains(((IPreferenceNode) element).getId());
+			}
+		});
+		filterText.addModifyListener(new ModifyListener() {
+			@Override
+			public void modifyText(ModifyEvent e) {
+				matches = searchIndex.search(filterText.getText());
+				getTreeViewer().refresh();
+				if (matches != null) {
+					getTreeViewer().expandAll();
+				}
+			}
+		});
+		return composite;
+	}
+}
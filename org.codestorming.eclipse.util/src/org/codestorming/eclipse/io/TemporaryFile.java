@@ -11,30 +11,66 @@
  ****************************************************************************/
 package org.codestorming.eclipse.io;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.security.MessageDigest;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codestorming.eclipse.util.EclipseUtilActivator;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Platform;
 import org.osgi.framework.Bundle;
 
 /**
  * A {@code TemporaryFile} is a file created in the user workspace and deleted when the
  * JVM (properly) terminates.
+ * <p>
+ * The content of a {@code TemporaryFile} can be copied synchronously with
+ * {@link #TemporaryFile(InputStream)} or asynchronously with
+ * {@link #createAsync(InputStream, IProgressMonitor)}. In the latter case, the content
+ * already written can be read with {@link #openInputStream()} before the copy is
+ * complete.
  * 
  * @author Thaedrik <thaedrik@gmail.com>
  * @since 1.2
  */
 public class TemporaryFile {
 
+	private static final int BUFFER_SIZE = 8192;
+
+	// Executor dedicated to the asynchronous copies.
+	private static ExecutorService ioExecutor;
+
 	private File tempFile;
 
+	// Guards the state of the content below.
+	private final Object contentLock = new Object();
+
+	// Number of bytes already written in the temporary file.
+	private long written;
+
+	// Indicates if the whole content has been written.
+	private boolean complete;
+
+	// Error that interrupted the copy of the content.
+	private IOException failure;
+
+	// Digest of the content when this file is shared through a TemporaryFileStore.
+	String digest;
+
 	private static String generateFileName() {
 		return UUID.randomUUID().toString().concat(".temp"); //$NON-NLS-1$
 	}
@@ -47,34 +83,235 @@ public class TemporaryFile {
 	 *         content.
 	 */
 	public TemporaryFile(InputStream inputStream) throws IOException {
+		this();
+		copyContent(inputStream, -1, null, null);
+	}
+
+	/**
+	 * Creates a new {@code TemporaryFile} from the given {@link InputStream}, updating the
+	 * given {@link MessageDigest} with the copied content.
+	 * 
+	 * @param inputStream
+	 * @param messageDigest The digest to update.
+	 * @throws IOException if an error happens during the copy of the {@code inputStream}
+	 *         content.
+	 */
+	TemporaryFile(InputStream inputStream, MessageDigest messageDigest) throws IOException {
+		this();
+		copyContent(inputStream, -1, null, messageDigest);
+	}
+
+	/**
+	 * Creates a new empty {@code TemporaryFile}.
+	 */
+	private TemporaryFile() {
 		Bundle bundle = Platform.getBundle(EclipseUtilActivator.PLUGIN_ID);
 		tempFile = bundle.getDataFile(generateFileName());
 		if (tempFile == null) {
 			throw new IllegalStateException("This system does not support user data storage.");
 		}
 		tempFile.deleteOnExit();
-		copyContent(inputStream);
+	}
+
+	/**
+	 * Creates a new {@code TemporaryFile} whose content is copied from the given
+	 * {@link InputStream} in a dedicated I/O thread.
+	 * <p>
+	 * This method returns immediately. The {@code TemporaryFile} is available through
+	 * {@link TemporaryFileFuture#getTemporaryFile()} before the end of the copy, and the
+	 * content already copied can be read with {@link #openInputStream()}.
+	 * <p>
+	 * The {@code inputStream} is not closed at the end of the copy.
+	 * 
+	 * @param inputStream The stream to copy.
+	 * @param monitor The progress monitor for the copy, or {@code null}.
+	 * @return the {@link TemporaryFileFuture} completed when the whole content has been
+	 *         copied.
+	 * @since 3.1
+	 */
+	public static TemporaryFileFuture createAsync(InputStream inputStream, IProgressMonitor monitor) {
+		return createAsync(inputStream, -1, monitor);
+	}
+
+	/**
+	 * Creates a new {@code TemporaryFile} whose content is copied from the given
+	 * {@link InputStream} in a dedicated I/O thread.
+	 * <p>
+	 * This method returns immediately. The {@code TemporaryFile} is available through
+	 * {@link TemporaryFileFuture#getTemporaryFile()} before the end of the copy, and the
+	 * content already copied can be read with {@link #openInputStream()}.
+	 * <p>
+	 * The {@code inputStream} is not closed at the end of the copy.
+	 * 
+	 * @param inputStream The stream to copy.
+	 * @param length The expected length of the content, used for reporting progress, or
+	 *        {@code -1} if unknown.
+	 * @param monitor The progress monitor for the copy, or {@code null}.
+	 * @return the {@link TemporaryFileFuture} completed when the whole content has been
+	 *         copied.
+	 * @since 3.1
+	 */
+	public static TemporaryFileFuture createAsync(final InputStream inputStream, final long length,
+			IProgressMonitor monitor) {
+		final TemporaryFile file = new TemporaryFile();
+		final IProgressMonitor progressMonitor = monitor != null ? monitor : new NullProgressMonitor();
+		final TemporaryFileFuture future = new TemporaryFileFuture(file, new Callable<TemporaryFile>() {
+			@Override
+			public TemporaryFile call() throws Exception {
+				file.copyContent(inputStream, length, progressMonitor, null);
+				return file;
+			}
+		});
+		getIOExecutor().execute(future);
+		return future;
+	}
+
+	private static synchronized ExecutorService getIOExecutor() {
+		if (ioExecutor == null) {
+			ioExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "TemporaryFile I/O " + count.incrementAndGet()); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return ioExecutor;
 	}
 
 	/**
 	 * Copy the {@code inputStream} content into the temporary file.
 	 * 
 	 * @param inputStream
+	 * @param length The expected length of the content or {@code -1}.
+	 * @param monitor The progress monitor or {@code null}.
+	 * @param messageDigest The digest to update with the content or {@code null}.
 	 * @throws IOException
 	 */
-	private void copyContent(InputStream inputStream) throws IOException {
-		final OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile));
+	private void copyContent(InputStream inputStream, long length, IProgressMonitor monitor,
+			MessageDigest messageDigest) throws IOException {
+		if (monitor != null) {
+			monitor.beginTask(getName(), length > 0 ? (int) Math.min(length / 1024 + 1, Integer.MAX_VALUE)
+					: IProgressMonitor.UNKNOWN);
+		}
+		final OutputStream out = new FileOutputStream(tempFile);
 		try {
-			final byte[] buffer = new byte[2048];
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			long reported = 0;
 			int len;
 			while ((len = inputStream.read(buffer)) > 0) {
+				if (monitor != null && monitor.isCanceled() || Thread.interrupted()) {
+					throw new OperationCanceledException();
+				}
 				out.write(buffer, 0, len);
+				if (messageDigest != null) {
+					messageDigest.update(buffer, 0, len);
+				}
+				synchronized (contentLock) {
+					written += len;
+					contentLock.notifyAll();
+				}
+				if (monitor != null && written / 1024 > reported) {
+					monitor.worked((int) (written / 1024 - reported));
+					reported = written / 1024;
+				}
 			}
+		} catch (IOException e) {
+			fail(e);
+			throw e;
+		} catch (RuntimeException e) {
+			fail(new InterruptedIOException("The copy of the content has been canceled.")); //$NON-NLS-1$
+			out.close();
+			// Not keeping the partial content until exit
+			delete();
+			throw e;
 		} finally {
 			out.close();
+			if (monitor != null) {
+				monitor.done();
+			}
+		}
+		synchronized (contentLock) {
+			complete = true;
+			contentLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Marks the content of this {@code TemporaryFile} as incomplete because of the given
+	 * error.
+	 * <p>
+	 * The readers waiting for more content are released and receive the given error.
+	 * 
+	 * @param error The error.
+	 */
+	void fail(IOException error) {
+		synchronized (contentLock) {
+			if (!complete && failure == null) {
+				failure = error;
+				contentLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Renames the underlying file, keeping it in the same directory.
+	 * <p>
+	 * An existing file with the given name is replaced.
+	 * 
+	 * @param name The new name of the file.
+	 * @throws IOException if the file cannot be renamed.
+	 */
+	void rename(String name) throws IOException {
+		final File target = new File(tempFile.getParentFile(), name);
+		if (target.exists() && !target.delete() || !tempFile.renameTo(target)) {
+			throw new IOException("Couldn't rename " + tempFile + " to " + name); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		target.deleteOnExit();
+		tempFile = target;
+	}
+
+	/**
+	 * Deletes the underlying file.
+	 * 
+	 * @return {@code true} if the file has been deleted;<br>
+	 *         {@code false} otherwise.
+	 */
+	boolean delete() {
+		return tempFile.delete();
+	}
+
+	/**
+	 * Indicates if the whole content of this {@code TemporaryFile} has been written.
+	 * 
+	 * @return {@code true} if the content is complete;<br>
+	 *         {@code false} otherwise.
+	 * @since 3.1
+	 */
+	public boolean isComplete() {
+		synchronized (contentLock) {
+			return complete;
 		}
 	}
 
+	/**
+	 * Opens an {@link InputStream} on the content of this {@code TemporaryFile}.
+	 * <p>
+	 * If the content is still being copied, the returned stream provides the bytes already
+	 * written and blocks until more bytes are available or the copy ends. The file is only
+	 * opened on the first read, once the copy has written some content.
+	 * 
+	 * @return a new {@link InputStream} on the content of this {@code TemporaryFile}.
+	 * @throws IOException if the temporary file cannot be opened.
+	 * @since 3.1
+	 */
+	public InputStream openInputStream() throws IOException {
+		return new ContentInputStream();
+	}
+
 	/**
 	 * @see java.io.File#getName()
 	 */
@@ -166,4 +403,84 @@ public class TemporaryFile {
 		return tempFile.toString();
 	}
 
+	/**
+	 * {@link InputStream} reading the content of the temporary file, waiting for the
+	 * bytes not written yet.
+	 */
+	private class ContentInputStream extends InputStream {
+
+		// Opened on the first read, the file being created by the copy
+		private InputStream in;
+		private long position;
+		private boolean closed;
+
+		@Override
+		public int read() throws IOException {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}// else
+			if (closed) {
+				throw new IOException("Stream closed"); //$NON-NLS-1$
+			}// else
+			final long available = awaitContent();
+			if (available == 0) {
+				return -1;
+			}// else
+			if (in == null) {
+				in = new FileInputStream(tempFile);
+			}
+			final int count = in.read(b, off, (int) Math.min(len, available));
+			if (count > 0) {
+				position += count;
+			}
+			return count;
+		}
+
+		@Override
+		public int available() throws IOException {
+			synchronized (contentLock) {
+				return (int) Math.min(written - position, Integer.MAX_VALUE);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+			if (in != null) {
+				in.close();
+			}
+		}
+
+		/**
+		 * Waits until some bytes are available after the current position.
+		 * 
+		 * @return the number of bytes available or {@code 0} if the end of the content
+		 *         has been reached.
+		 * @throws IOException if the copy of the content failed.
+		 */
+		private long awaitContent() throws IOException {
+			synchronized (contentLock) {
+				while (position >= written && !complete) {
+					if (failure != null) {
+						final IOException e = new IOException("The copy of the content failed."); //$NON-NLS-1$
+						e.initCause(failure);
+						throw e;
+					}// else
+					try {
+						contentLock.wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException();
+					}
+				}
+				return written - position;
+			}
+		}
+	}
 }
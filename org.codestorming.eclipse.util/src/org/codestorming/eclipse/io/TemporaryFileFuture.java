@@ -0,0 +1,65 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.io;
+
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * {@link Future} of a {@link TemporaryFile} whose content is copied asynchronously.
+ * <p>
+ * The {@link TemporaryFile} is available with {@link #getTemporaryFile()} as soon as
+ * the copy is started, allowing to read the content already written.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ * @see TemporaryFile#createAsync(InputStream, IProgressMonitor)
+ */
+public class TemporaryFileFuture extends FutureTask<TemporaryFile> {
+
+	private final TemporaryFile temporaryFile;
+
+	/**
+	 * Creates a new {@code TemporaryFileFuture}.
+	 * 
+	 * @param temporaryFile The {@link TemporaryFile} being populated.
+	 * @param copy The copy of the content.
+	 */
+	TemporaryFileFuture(TemporaryFile temporaryFile, Callable<TemporaryFile> copy) {
+		super(copy);
+		this.temporaryFile = temporaryFile;
+	}
+
+	/**
+	 * Returns the {@link TemporaryFile}, whose content may not be complete yet.
+	 * 
+	 * @return the {@link TemporaryFile}.
+	 */
+	public TemporaryFile getTemporaryFile() {
+		return temporaryFile;
+	}
+
+	@Override
+	protected void done() {
+		if (isCancelled()) {
+			// Releasing the readers if the copy never ran
+			temporaryFile.fail(new InterruptedIOException("The copy of the content has been canceled.")); //$NON-NLS-1$
+			// Not keeping the partial content until exit
+			temporaryFile.delete();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codestorming.util.Bytes;
+import org.eclipse.core.runtime.Assert;
+
+/**
+ * Content-addressed store of {@link TemporaryFile TemporaryFiles}.
+ * <p>
+ * The content of a {@link TemporaryFile} acquired through this store is hashed while
+ * being copied and the file is named after its digest. Acquiring several times the same
+ * content returns the same shared {@link TemporaryFile}, which is deleted when every
+ * acquirer has {@link #release(TemporaryFile) released} it.
+ * <p>
+ * The shared {@link TemporaryFile TemporaryFiles} <strong>should not</strong> be modified
+ * by users, as they may be used by others.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+public final class TemporaryFileStore {
+
+	private static final String DIGEST_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+	// Shared files by digest. Guarded by itself.
+	private static final Map<String, Entry> files = new HashMap<String, Entry>();
+
+	// Suppressing default constructor, ensuring non-instantiability
+	private TemporaryFileStore() {}
+
+	/**
+	 * Returns the shared {@link TemporaryFile} with the content of the given
+	 * {@link InputStream}.
+	 * <p>
+	 * The returned file must be {@link #release(TemporaryFile) released} when not used
+	 * anymore.
+	 * 
+	 * @param inputStream The content of the file.
+	 * @return the shared {@link TemporaryFile} with the given content.
+	 * @throws IOException if an error happens during the copy of the {@code inputStream}
+	 *         content.
+	 */
+	public static TemporaryFile acquire(InputStream inputStream) throws IOException {
+		Assert.isNotNull(inputStream);
+		final MessageDigest messageDigest = newMessageDigest();
+		final TemporaryFile staged = new TemporaryFile(inputStream, messageDigest);
+		final String digest = toHexString(messageDigest.digest());
+		synchronized (files) {
+			Entry entry = files.get(digest);
+			if (entry != null) {
+				// Same content already stored
+				staged.delete();
+			} else {
+				try {
+					staged.rename(digest.concat(".temp")); //$NON-NLS-1$
+				} catch (IOException e) {
+					staged.delete();
+					throw e;
+				}
+				staged.digest = digest;
+				entry = new Entry(staged);
+				files.put(digest, entry);
+			}
+			entry.references++;
+			return entry.file;
+		}
+	}
+
+	/**
+	 * Releases the given shared {@link TemporaryFile}.
+	 * <p>
+	 * The file is deleted when it is not referenced anymore.
+	 * 
+	 * @param file A {@link TemporaryFile} obtained through {@link #acquire(InputStream)}.
+	 * @return {@code true} if the file has been deleted;<br>
+	 *         {@code false} otherwise.
+	 */
+	public static boolean release(TemporaryFile file) {
+		Assert.isNotNull(file);
+		synchronized (files) {
+			final Entry entry = file.digest != null ? files.get(file.digest) : null;
+			if (entry == null || entry.file != file) {
+				return false;
+			}// else
+			if (--entry.references > 0) {
+				return false;
+			}// else
+			files.remove(file.digest);
+			return file.delete();
+		}
+	}
+
+	/**
+	 * Returns the number of references on the given shared {@link TemporaryFile}.
+	 * 
+	 * @param file The {@link TemporaryFile}.
+	 * @return the number of references on the given file, or {@code 0} if it is not shared
+	 *         by this store.
+	 */
+	public static int getReferenceCount(TemporaryFile file) {
+		synchronized (files) {
+			final Entry entry = file.digest != null ? files.get(file.digest) : null;
+			return entry != null && entry.file == file ? entry.references : 0;
+		}
+	}
+
+	private static MessageDigest newMessageDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHexString(byte[] bytes) {
+		final StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			builder.append(Bytes.byteToString(b));
+		}
+		return builder.toString().toLowerCase();
+	}
+
+	private static class Entry {
+
+		final TemporaryFile file;
+		int references;
+
+		Entry(TemporaryFile file) {
+			this.file = file;
+		}
+	}
+}
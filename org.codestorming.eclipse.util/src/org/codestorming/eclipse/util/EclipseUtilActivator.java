@@ -11,7 +11,15 @@
  ****************************************************************************/
 package org.codestorming.eclipse.util;
 
+import org.codestorming.eclipse.e4.di.BinderUtil;
+import org.codestorming.eclipse.e4.handler.PreferencesHandler;
 import org.codestorming.eclipse.util.pde.BundleActivatorWithLog;
+import org.codestorming.eclipse.util.preferences.PreferenceWriteBatcher;
+import org.codestorming.eclipse.util.preferences.ProjectPreferenceStores;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Platform;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -21,6 +29,15 @@ public class EclipseUtilActivator extends BundleActivatorWithLog {
 
 	public static final String PLUGIN_ID = "org.codestorming.eclipse.util";
 
+	/**
+	 * System property enabling the loading of the preference page classes at startup.
+	 * <p>
+	 * Loading these classes activates their bundles.
+	 * 
+	 * @since 3.1
+	 */
+	public static final String WARM_UP_PREFERENCE_PAGES = PLUGIN_ID + ".warmUpPreferencePages"; //$NON-NLS-1$
+
 	// The shared instance
 	private static EclipseUtilActivator plugin;
 
@@ -28,14 +45,52 @@ public class EclipseUtilActivator extends BundleActivatorWithLog {
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
 		plugin = this;
+		registerStartupTask("Binder classes", 10, new Runnable() {//$NON-NLS-1$
+			@Override
+			public void run() {
+				BinderUtil.loadClasses(Platform.getExtensionRegistry(), true, null);
+			}
+		});
+		if (Boolean.getBoolean(WARM_UP_PREFERENCE_PAGES)) {
+			registerStartupTask("Preference pages", 0, new Runnable() {//$NON-NLS-1$
+				@Override
+				public void run() {
+					PreferencesHandler.loadClasses(Platform.getExtensionRegistry(), false, null);
+				}
+			});
+		}
 	}
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		// The workspace may already be closed when the platform shuts down
+		if (PreferenceWriteBatcher.getPendingCount() > 0 && isWorkspaceOpen()) {
+			try {
+				PreferenceWriteBatcher.flush(null);
+			} catch (CoreException e) {
+				log(e);
+			}
+		}
+		if (isWorkspaceOpen()) {
+			ProjectPreferenceStores.dispose();
+		}
 		super.stop(context);
 		plugin = null;
 	}
 
+	private static boolean isWorkspaceOpen() {
+		final Bundle resources = Platform.getBundle(ResourcesPlugin.PI_RESOURCES);
+		if (resources == null || resources.getState() != Bundle.ACTIVE) {
+			return false;
+		}// else
+		try {
+			ResourcesPlugin.getWorkspace();
+			return true;
+		} catch (IllegalStateException e) {
+			return false;
+		}
+	}
+
 	/**
 	 * Returns the shared {@link EclipseUtilActivator} instance.
 	 * 
@@ -11,12 +11,11 @@
  ****************************************************************************/
 package org.codestorming.eclipse.util;
 
+import org.codestorming.eclipse.util.pde.BundleClassCache;
 import org.eclipse.core.runtime.Assert;
-import org.eclipse.core.runtime.Platform;
 import org.eclipse.jface.preference.IPreferencePage;
 import org.eclipse.jface.preference.PreferenceNode;
 import org.eclipse.jface.resource.ImageDescriptor;
-import org.osgi.framework.Bundle;
 
 /**
  * {@link PreferenceNode} using the bundle ID for retrieving a page's class.
@@ -29,6 +28,7 @@ public class WorkbenchPreferenceNode extends PreferenceNode {
 	private String label;
 	private ImageDescriptor imageDescriptor;
 	private String bundleID;
+	private String[] keywordReferences = {};
 
 	/**
 	 * Creates a preference node with the given id, label, and image, bundleID and the
@@ -61,14 +61,7 @@ public class WorkbenchPreferenceNode extends PreferenceNode {
 		Assert.isNotNull(bundleID);
 		Assert.isNotNull(className);
 		try {
-			final Bundle bundle = Platform.getBundle(bundleID);
-			if (bundle == null) {
-				return null;
-			}// else
-			Class<?> cl = bundle.loadClass(className);
-			if (cl != null) {
-				return cl.newInstance();
-			}
+			return BundleClassCache.newInstance(bundleID, className, Object.class);
 		} catch (ClassNotFoundException e) {
 			return null;
 		} catch (InstantiationException e) {
@@ -78,7 +71,28 @@ public class WorkbenchPreferenceNode extends PreferenceNode {
 		} catch (NoSuchMethodError e) {
 			return null;
 		}
-		return null;
+	}
+
+	/**
+	 * Returns the ids of the keywords associated to this node's page.
+	 * 
+	 * @return the ids of the keywords associated to this node's page.
+	 * @since 3.1
+	 */
+	public String[] getKeywordReferences() {
+		return keywordReferences;
+	}
+
+	/**
+	 * Sets the ids of the keywords associated to this node's page, used for searching the
+	 * page without instantiating it.
+	 * 
+	 * @param keywordReferences The ids of the keywords (must not be {@code null}).
+	 * @since 3.1
+	 */
+	public void setKeywordReferences(String[] keywordReferences) {
+		Assert.isNotNull(keywordReferences);
+		this.keywordReferences = keywordReferences;
 	}
 
 	/*
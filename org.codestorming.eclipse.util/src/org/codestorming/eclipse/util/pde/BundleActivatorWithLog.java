@@ -11,6 +11,10 @@
  ****************************************************************************/
 package org.codestorming.eclipse.util.pde;
 
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.Future;
+
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
@@ -27,13 +31,37 @@ public abstract class BundleActivatorWithLog implements BundleActivator {
 
 	private BundleContext context;
 
+	private volatile LogPipeline logPipeline;
+
+	private final StartupTasks startupTasks = new StartupTasks(this);
+
 	/**
 	 * Returns the log for this plug-in. If no such log exists, one is created.
 	 * 
 	 * @return the log for this plug-in
 	 */
 	public ILog getLog() {
-		return Platform.getLog(context.getBundle());
+		return getLogPipeline().getLog();
+	}
+
+	/**
+	 * Returns the {@link LogPipeline} through which this plug-in logs.
+	 * 
+	 * @return the {@link LogPipeline} of this plug-in.
+	 * @since 3.1
+	 */
+	public LogPipeline getLogPipeline() {
+		LogPipeline pipeline = logPipeline;
+		if (pipeline == null) {
+			synchronized (this) {
+				pipeline = logPipeline;
+				if (pipeline == null) {
+					pipeline = new LogPipeline(Platform.getLog(context.getBundle()), getPluginID());
+					logPipeline = pipeline;
+				}
+			}
+		}
+		return pipeline;
 	}
 
 	protected BundleContext getContext() {
@@ -43,13 +71,70 @@ public abstract class BundleActivatorWithLog implements BundleActivator {
 	@Override
 	public void start(BundleContext context) throws Exception {
 		this.context = context;
+		startupTasks.listen(context);
 	}
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		startupTasks.stop();
+		final LogPipeline pipeline = logPipeline;
+		if (pipeline != null) {
+			pipeline.close();
+		}
 		this.context = null;
 	}
 
+	/**
+	 * Registers a task to run once this bundle is started.
+	 * <p>
+	 * The startup tasks are meant to move the initializations of the plug-in out of its
+	 * activation, which can happen in the UI thread. They must be registered in
+	 * {@link #start(BundleContext)}, and run in a background thread once the bundle is
+	 * started, by decreasing priority then in their registration order.
+	 * 
+	 * @param name The name of the task.
+	 * @param priority The priority of the task.
+	 * @param task The task.
+	 * @throws IllegalStateException if the startup tasks are already running.
+	 * @since 3.1
+	 */
+	protected void registerStartupTask(String name, int priority, Runnable task) {
+		startupTasks.register(name, priority, task);
+	}
+
+	/**
+	 * Returns a {@link Future} completed when the startup tasks of this plug-in have run.
+	 * 
+	 * @return the {@link Future} of the startup tasks.
+	 * @see #registerStartupTask(String, int, Runnable)
+	 * @since 3.1
+	 */
+	public Future<?> getStartupFuture() {
+		return startupTasks.getReady();
+	}
+
+	/**
+	 * Returns the duration (in milliseconds) of each startup task that has run.
+	 * 
+	 * @return the durations of the startup tasks, by name.
+	 * @since 3.1
+	 */
+	public Map<String, Long> getStartupTimings() {
+		return startupTasks.getTimings();
+	}
+
+	/**
+	 * Enables the structured log of this plug-in, written as JSON lines into the
+	 * {@value JsonLogSink#STATE_FOLDER} folder of its state location.
+	 * 
+	 * @see JsonLogSink
+	 * @since 3.1
+	 */
+	public void enableStructuredLog() {
+		final File directory = Platform.getStateLocation(context.getBundle()).append(JsonLogSink.STATE_FOLDER).toFile();
+		getLogPipeline().setStructuredSink(new JsonLogSink(directory));
+	}
+
 	/**
 	 * Logs the given {@link Exception exception}.
 	 * 
@@ -96,9 +181,8 @@ public abstract class BundleActivatorWithLog implements BundleActivator {
 	 * @since 3.0
 	 */
 	public void log(String message, int severity, Exception exception) {
-		ILog log = this.getLog();
 		IStatus status = new Status(severity, this.getPluginID(), message, exception);
-		log.log(status);
+		getLogPipeline().log(status);
 	}
 
 	/**
@@ -0,0 +1,262 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.pde;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.SynchronousBundleListener;
+
+/**
+ * Cache of the classes loaded from bundles, and of their default constructors.
+ * <p>
+ * The classes are identified by the ID of the bundle containing them and their name.
+ * The cached classes of a bundle are forgotten when the bundle is updated, unresolved or
+ * uninstalled.
+ * <p>
+ * The classes referenced by extensions can be loaded in advance, in a background job,
+ * with {@link #warmUp(IConfigurationElement[], String)}.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+public final class BundleClassCache {
+
+	// Cached classes by bundle ID and class name.
+	private static final ConcurrentMap<String, ConcurrentMap<String, CachedClass>> classes = new ConcurrentHashMap<String, ConcurrentMap<String, CachedClass>>();
+
+	private static boolean listening;
+
+	// Suppressing default constructor, ensuring non-instantiability
+	private BundleClassCache() {}
+
+	/**
+	 * Returns the class with the given name, loaded by the specified bundle.
+	 * 
+	 * @param bundleId ID of the bundle containing the class.
+	 * @param className Name of the class.
+	 * @return the class with the given name.
+	 * @throws ClassNotFoundException if the bundle does not exist or the class cannot be
+	 *         found.
+	 */
+	public static Class<?> loadClass(String bundleId, String className) throws ClassNotFoundException {
+		return getCachedClass(bundleId, className).type;
+	}
+
+	/**
+	 * Creates a new instance of the class with the given name, loaded by the specified
+	 * bundle, using its public default constructor.
+	 * 
+	 * @param bundleId ID of the bundle containing the class.
+	 * @param className Name of the class.
+	 * @param type The expected type of the instance.
+	 * @return the new instance.
+	 * @throws ClassNotFoundException if the bundle does not exist or the class cannot be
+	 *         found.
+	 * @throws InstantiationException if the class cannot be instantiated or its
+	 *         constructor throws a checked exception.
+	 * @throws IllegalAccessException if the class has no public default constructor.
+	 * @throws ClassCastException if the instance is not of the expected type.
+	 * @throws RuntimeException if thrown by the constructor, as is.
+	 */
+	public static <T> T newInstance(String bundleId, String className, Class<T> type) throws ClassNotFoundException,
+			InstantiationException, IllegalAccessException {
+		return type.cast(getCachedClass(bundleId, className).newInstance());
+	}
+
+	/**
+	 * Loads in a background {@link Job} the classes referenced by the given attribute of
+	 * the specified configuration elements.
+	 * <p>
+	 * The classes that cannot be loaded are ignored.
+	 * 
+	 * @param elements The configuration elements.
+	 * @param classAttribute The name of the attribute containing the class name.
+	 * @return the scheduled {@link Job}.
+	 */
+	public static Job warmUp(final IConfigurationElement[] elements, final String classAttribute) {
+		final Job job = new Job("Loading classes") { //$NON-NLS-1$
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				load(elements, classAttribute, false, monitor);
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.setPriority(Job.DECORATE);
+		job.schedule();
+		return job;
+	}
+
+	/**
+	 * Loads in the current thread the classes referenced by the given attribute of the
+	 * specified configuration elements.
+	 * <p>
+	 * Loading a class from a bundle with a lazy activation policy activates it. With
+	 * {@code activeBundlesOnly}, the classes of the bundles that are not active yet are
+	 * skipped. The classes that cannot be loaded are ignored.
+	 * 
+	 * @param elements The configuration elements.
+	 * @param classAttribute The name of the attribute containing the class name.
+	 * @param activeBundlesOnly {@code true} to only load the classes of the active
+	 *        bundles.
+	 * @param monitor The progress monitor, may be {@code null}.
+	 * @since 3.1
+	 */
+	public static void load(IConfigurationElement[] elements, String classAttribute, boolean activeBundlesOnly,
+			IProgressMonitor monitor) {
+		if (monitor == null) {
+			monitor = new NullProgressMonitor();
+		}
+		monitor.beginTask("Loading classes", elements.length); //$NON-NLS-1$
+		for (int i = 0; i < elements.length && !monitor.isCanceled(); i++) {
+			final String bundleId = elements[i].getContributor().getName();
+			final String className = elements[i].getAttribute(classAttribute);
+			if (className != null && (!activeBundlesOnly || isActive(bundleId))) {
+				try {
+					getCachedClass(bundleId, className).getConstructor();
+				} catch (ClassNotFoundException e) {
+					// Reported when the class is really needed
+				} catch (LinkageError e) {
+					// Reported when the class is really needed
+				}
+			}
+			monitor.worked(1);
+		}
+		monitor.done();
+	}
+
+	/**
+	 * Forgets the cached classes of the given bundle.
+	 * 
+	 * @param bundleId ID of the bundle.
+	 */
+	public static void clear(String bundleId) {
+		classes.remove(bundleId);
+	}
+
+	private static CachedClass getCachedClass(String bundleId, String className) throws ClassNotFoundException {
+		Assert.isNotNull(bundleId);
+		Assert.isNotNull(className);
+		ConcurrentMap<String, CachedClass> bundleClasses = classes.get(bundleId);
+		CachedClass cached = bundleClasses != null ? bundleClasses.get(className) : null;
+		if (cached == null) {
+			final Bundle bundle = Platform.getBundle(bundleId);
+			if (bundle == null) {
+				throw new ClassNotFoundException(className + " (bundle " + bundleId + " not found)"); //$NON-NLS-1$ //$NON-NLS-2$
+			}// else
+			listenToBundles();
+			cached = new CachedClass(bundle.loadClass(className));
+			if (bundleClasses == null) {
+				final ConcurrentMap<String, CachedClass> newClasses = new ConcurrentHashMap<String, CachedClass>();
+				bundleClasses = classes.putIfAbsent(bundleId, newClasses);
+				if (bundleClasses == null) {
+					bundleClasses = newClasses;
+				}
+			}
+			final CachedClass existing = bundleClasses.putIfAbsent(className, cached);
+			if (existing != null) {
+				cached = existing;
+			}
+		}
+		return cached;
+	}
+
+	private static boolean isActive(String bundleId) {
+		final Bundle bundle = Platform.getBundle(bundleId);
+		return bundle != null && bundle.getState() == Bundle.ACTIVE;
+	}
+
+	private static synchronized void listenToBundles() {
+		if (listening) {
+			return;
+		}// else
+		final Bundle bundle = FrameworkUtil.getBundle(BundleClassCache.class);
+		final BundleContext context = bundle != null ? bundle.getBundleContext() : null;
+		if (context != null) {
+			context.addBundleListener(new SynchronousBundleListener() {
+				@Override
+				public void bundleChanged(BundleEvent event) {
+					final int type = event.getType();
+					if (type == BundleEvent.UPDATED || type == BundleEvent.UNRESOLVED
+							|| type == BundleEvent.UNINSTALLED) {
+						clear(event.getBundle().getSymbolicName());
+					}
+				}
+			});
+			listening = true;
+		}
+	}
+
+	private static class CachedClass {
+
+		final Class<?> type;
+		private volatile Constructor<?> constructor;
+
+		CachedClass(Class<?> type) {
+			this.type = type;
+		}
+
+		Constructor<?> getConstructor() {
+			Constructor<?> result = constructor;
+			if (result == null) {
+				try {
+					result = type.getConstructor();
+					try {
+						// Skipping the access checks on each instantiation
+						result.setAccessible(true);
+					} catch (SecurityException e) {
+						// Checks kept
+					}
+				} catch (NoSuchMethodException e) {
+					return null;
+				}
+				constructor = result;
+			}
+			return result;
+		}
+
+		Object newInstance() throws InstantiationException, IllegalAccessException {
+			final Constructor<?> c = getConstructor();
+			if (c == null) {
+				throw new IllegalAccessException(type.getName() + " has no public default constructor"); //$NON-NLS-1$
+			}// else
+			try {
+				return c.newInstance();
+			} catch (InvocationTargetException e) {
+				// Propagating the unchecked exceptions like Class.newInstance()
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				} else if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}// else
+				final InstantiationException exception = new InstantiationException(type.getName());
+				exception.initCause(e.getCause());
+				throw exception;
+			}
+		}
+	}
+}
@@ -0,0 +1,305 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.pde;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IStatus;
+
+/**
+ * Structured log writing the statuses as JSON lines, one JSON object per status :
+ * 
+ * <pre>
+ * {"timestamp":"2013-06-01T12:00:00.000+0200","plugin":"...","severity":"ERROR","code":0,
+ *  "thread":"main","message":"...","exception":[{"type":"...","message":"...","stack":["..."]}],
+ *  "children":[{"severity":"INFO","message":"..."}]}
+ * </pre>
+ * 
+ * The {@code exception} array contains the exception and its causes. The log is written
+ * into the {@value #FILE_NAME} file of its directory. When this file exceeds its maximum
+ * size, it is renamed with a number ({@code log.1.jsonl} being the most recent) and a new
+ * file is started.
+ * <p>
+ * The records are buffered until {@link #flush()} is called.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ * @see LogPipeline#setStructuredSink(JsonLogSink)
+ */
+public class JsonLogSink {
+
+	/**
+	 * Folder of the structured log in the state location of a plug-in.
+	 */
+	public static final String STATE_FOLDER = "logs"; //$NON-NLS-1$
+
+	/**
+	 * Name of the current log file.
+	 */
+	public static final String FILE_NAME = "log.jsonl"; //$NON-NLS-1$
+
+	/**
+	 * Default maximum size (in bytes) of a log file.
+	 */
+	public static final long DEFAULT_MAX_SIZE = 10L * 1024 * 1024;
+
+	/**
+	 * Default number of rotated log files kept.
+	 */
+	public static final int DEFAULT_MAX_FILES = 5;
+
+	private static final String PREFIX = "log."; //$NON-NLS-1$
+	private static final String EXTENSION = ".jsonl"; //$NON-NLS-1$
+	private static final String ENCODING = "UTF-8"; //$NON-NLS-1$
+
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	private final File directory;
+
+	private final long maxSize;
+
+	private final int maxFiles;
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	private final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ"); //$NON-NLS-1$
+
+	private FileChannel channel;
+
+	// Size of the current file, buffer excluded
+	private long size;
+
+	/**
+	 * Creates a new {@code JsonLogSink} with the default maximum size and number of files.
+	 * 
+	 * @param directory The directory of the log files.
+	 */
+	public JsonLogSink(File directory) {
+		this(directory, DEFAULT_MAX_SIZE, DEFAULT_MAX_FILES);
+	}
+
+	/**
+	 * Creates a new {@code JsonLogSink}.
+	 * 
+	 * @param directory The directory of the log files (must <strong>not</strong> be
+	 *        {@code null}).
+	 * @param maxSize The maximum size (in bytes) of a log file.
+	 * @param maxFiles The number of rotated log files kept.
+	 */
+	public JsonLogSink(File directory, long maxSize, int maxFiles) {
+		Assert.isNotNull(directory);
+		Assert.isLegal(maxSize > 0 && maxFiles >= 0);
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.maxFiles = maxFiles;
+	}
+
+	/**
+	 * Appends a record of the given status.
+	 * 
+	 * @param status The logged status.
+	 * @param pluginId The ID of the logging plug-in.
+	 * @param thread The name of the logging thread.
+	 * @param time The time of the log.
+	 * @throws IOException if the record cannot be written.
+	 */
+	public synchronized void append(IStatus status, String pluginId, String thread, long time) throws IOException {
+		final byte[] record = toJson(status, pluginId, thread, time).getBytes(ENCODING);
+		if (channel == null) {
+			open();
+		}
+		if (size + buffer.position() + record.length > maxSize && size + buffer.position() > 0) {
+			rotate();
+		}
+		if (record.length > buffer.remaining()) {
+			flush();
+		}
+		if (record.length > buffer.capacity()) {
+			size += write(ByteBuffer.wrap(record));
+		} else {
+			buffer.put(record);
+		}
+	}
+
+	/**
+	 * Writes the buffered records.
+	 * 
+	 * @throws IOException if the records cannot be written.
+	 */
+	public synchronized void flush() throws IOException {
+		if (channel != null && buffer.position() > 0) {
+			buffer.flip();
+			size += write(buffer);
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Writes the buffered records and closes the log file.
+	 * 
+	 * @throws IOException if the records cannot be written.
+	 */
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			try {
+				flush();
+			} finally {
+				channel.close();
+				channel = null;
+				buffer.clear();
+			}
+		}
+	}
+
+	private void open() throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create the folder " + directory); //$NON-NLS-1$
+		}// else
+		channel = new FileOutputStream(new File(directory, FILE_NAME), true).getChannel();
+		size = channel.size();
+	}
+
+	private void rotate() throws IOException {
+		close();
+		new File(directory, PREFIX + maxFiles + EXTENSION).delete();
+		for (int i = maxFiles - 1; i > 0; i--) {
+			final File file = new File(directory, PREFIX + i + EXTENSION);
+			if (file.exists()) {
+				file.renameTo(new File(directory, PREFIX + (i + 1) + EXTENSION));
+			}
+		}
+		final File current = new File(directory, FILE_NAME);
+		if (maxFiles == 0 || !current.renameTo(new File(directory, PREFIX + 1 + EXTENSION))) {
+			current.delete();
+		}
+		open();
+	}
+
+	private int write(ByteBuffer bytes) throws IOException {
+		int written = 0;
+		while (bytes.hasRemaining()) {
+			written += channel.write(bytes);
+		}
+		return written;
+	}
+
+	private String toJson(IStatus status, String pluginId, String thread, long time) {
+		final StringBuilder json = new StringBuilder(256);
+		json.append('{');
+		appendField(json, "timestamp", dateFormat.format(new Date(time))).append(','); //$NON-NLS-1$
+		appendField(json, "plugin", pluginId).append(','); //$NON-NLS-1$
+		appendField(json, "severity", severity(status.getSeverity())).append(','); //$NON-NLS-1$
+		json.append("\"code\":").append(status.getCode()).append(','); //$NON-NLS-1$
+		appendField(json, "thread", thread).append(','); //$NON-NLS-1$
+		appendField(json, "message", status.getMessage()); //$NON-NLS-1$
+		if (status.getException() != null) {
+			json.append(",\"exception\":["); //$NON-NLS-1$
+			Throwable exception = status.getException();
+			for (int depth = 0; exception != null && depth < 16; depth++) {
+				if (depth > 0) {
+					json.append(',');
+				}
+				json.append('{');
+				appendField(json, "type", exception.getClass().getName()).append(','); //$NON-NLS-1$
+				appendField(json, "message", exception.getMessage()).append(",\"stack\":["); //$NON-NLS-1$ //$NON-NLS-2$
+				final StackTraceElement[] frames = exception.getStackTrace();
+				for (int i = 0; i < frames.length; i++) {
+					if (i > 0) {
+						json.append(',');
+					}
+					appendString(json, frames[i].toString());
+				}
+				json.append("]}"); //$NON-NLS-1$
+				exception = exception.getCause() != exception ? exception.getCause() : null;
+			}
+			json.append(']');
+		}
+		if (status.isMultiStatus()) {
+			json.append(",\"children\":["); //$NON-NLS-1$
+			final IStatus[] children = status.getChildren();
+			for (int i = 0; i < children.length; i++) {
+				if (i > 0) {
+					json.append(',');
+				}
+				json.append('{');
+				appendField(json, "severity", severity(children[i].getSeverity())).append(','); //$NON-NLS-1$
+				appendField(json, "message", children[i].getMessage()).append('}'); //$NON-NLS-1$
+			}
+			json.append(']');
+		}
+		return json.append("}\n").toString(); //$NON-NLS-1$
+	}
+
+	private static StringBuilder appendField(StringBuilder json, String name, String value) {
+		json.append('"').append(name).append("\":"); //$NON-NLS-1$
+		return appendString(json, value);
+	}
+
+	private static StringBuilder appendString(StringBuilder json, String value) {
+		if (value == null) {
+			return json.append("null"); //$NON-NLS-1$
+		}// else
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				json.append("\\\""); //$NON-NLS-1$
+				break;
+			case '\\':
+				json.append("\\\\"); //$NON-NLS-1$
+				break;
+			case '\n':
+				json.append("\\n"); //$NON-NLS-1$
+				break;
+			case '\r':
+				json.append("\\r"); //$NON-NLS-1$
+				break;
+			case '\t':
+				json.append("\\t"); //$NON-NLS-1$
+				break;
+			default:
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", Integer.valueOf(c))); //$NON-NLS-1$
+				} else {
+					json.append(c);
+				}
+			}
+		}
+		return json.append('"');
+	}
+
+	private static String severity(int severity) {
+		switch (severity) {
+		case IStatus.OK:
+			return "OK"; //$NON-NLS-1$
+		case IStatus.INFO:
+			return "INFO"; //$NON-NLS-1$
+		case IStatus.WARNING:
+			return "WARNING"; //$NON-NLS-1$
+		case IStatus.ERROR:
+			return "ERROR"; //$NON-NLS-1$
+		case IStatus.CANCEL:
+			return "CANCEL"; //$NON-NLS-1$
+		default:
+			return String.valueOf(severity);
+		}
+	}
+}
@@ -0,0 +1,667 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.pde;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Pipeline through which a plug-in writes its {@link IStatus statuses} into its
+ * {@link ILog log}.
+ * <p>
+ * The statuses are written synchronously by default. In {@link #setAsynchronous(boolean)
+ * asynchronous} mode, they are queued in a bounded buffer and written by batches from a
+ * background thread, the logging threads never waiting for the log I/O. When the buffer
+ * is full, the new statuses are dropped and counted.
+ * <p>
+ * The number of statuses logged per second can be {@link #setRateLimit(int, int) limited}
+ * for each severity. The statuses over the limit are suppressed, and their count is
+ * logged when the next second starts.
+ * <p>
+ * The statuses with an exception can be {@link #setAggregationPeriod(long) aggregated}
+ * : the first occurrence of an error is logged in full, the following occurrences of the
+ * same error are counted and summarized in a {@link MultiStatus} once per period, from
+ * a background timer. Two statuses are occurrences of the same error if they have the
+ * same exception type, the same messages (numbers aside) and the same top stack frames.
+ * The aggregation is disabled by default.
+ * <p>
+ * The statuses can also be written into a {@link #setStructuredSink(JsonLogSink)
+ * structured log}, as JSON lines.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ * @see BundleActivatorWithLog#getLogPipeline()
+ * @see UIPluginWithLog#getLogPipeline()
+ */
+public class LogPipeline {
+
+	/**
+	 * Default capacity of the buffer of the asynchronous mode.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Recommended period (in milliseconds) of the summaries of the aggregated errors.
+	 */
+	public static final long DEFAULT_AGGREGATION_PERIOD = 60000;
+
+	// Maximum number of statuses written per batch
+	private static final int BATCH_SIZE = 64;
+
+	// Time (in milliseconds) the writer waits for statuses before checking if it is stopped
+	private static final long POLL_TIMEOUT = 100;
+
+	// Maximum number of errors being aggregated
+	private static final int MAX_AGGREGATES = 1000;
+
+	// Number of stack frames in the fingerprint of an error
+	private static final int FINGERPRINT_FRAMES = 3;
+
+	// Marker of an aggregated error occurrence to log in full
+	private static final IStatus FULL = Status.OK_STATUS;
+
+	// Marker of an occurrence counted by an aggregate already summarized for the last time
+	private static final IStatus RETRY = Status.CANCEL_STATUS;
+
+	private static final Pattern NUMBERS = Pattern.compile("\\d+"); //$NON-NLS-1$
+
+	private static final String[] SEVERITIES = { "OK", "INFO", "WARNING", "ERROR", "CANCEL" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+	private final ILog log;
+
+	private final String pluginId;
+
+	// Rate limiter of each severity
+	private final RateLimiter[] limiters = new RateLimiter[SEVERITIES.length];
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	// Aggregated errors, by fingerprint ; replaced when flushed
+	private volatile ConcurrentMap<String, Aggregate> aggregates = new ConcurrentHashMap<String, Aggregate>();
+
+	private volatile long aggregationPeriod;
+
+	// Timer writing the summaries of the aggregated errors
+	private Timer aggregationTimer;
+
+	private volatile BlockingQueue<LogRecord> queue;
+
+	private volatile JsonLogSink structuredSink;
+
+	private LogWriter writer;
+
+	/**
+	 * Creates a new {@code LogPipeline}.
+	 * 
+	 * @param log The log of the plug-in (must <strong>not</strong> be {@code null}).
+	 * @param pluginId The ID of the plug-in.
+	 */
+	public LogPipeline(ILog log, String pluginId) {
+		Assert.isNotNull(log);
+		this.log = log;
+		this.pluginId = pluginId;
+		for (int i = 0; i < limiters.length; i++) {
+			limiters[i] = new RateLimiter();
+		}
+	}
+
+	/**
+	 * Returns the log in which this pipeline writes.
+	 * 
+	 * @return the log in which this pipeline writes.
+	 */
+	public ILog getLog() {
+		return log;
+	}
+
+	/**
+	 * Logs the given status.
+	 * 
+	 * @param status The status to log.
+	 */
+	public void log(IStatus status) {
+		if (aggregationPeriod > 0 && status.getException() != null && !aggregate(status)) {
+			return;
+		}// else
+		limit(status);
+	}
+
+	/**
+	 * Sets the period (in milliseconds) of the summaries of the aggregated errors.
+	 * 
+	 * @param period The period, in milliseconds, or {@code 0} to disable the aggregation.
+	 * @see #DEFAULT_AGGREGATION_PERIOD
+	 */
+	public synchronized void setAggregationPeriod(long period) {
+		Assert.isLegal(period >= 0);
+		aggregationPeriod = period;
+		if (aggregationTimer != null) {
+			aggregationTimer.cancel();
+			aggregationTimer = null;
+		}
+		if (period == 0) {
+			flushAggregates();
+		} else {
+			aggregationTimer = new Timer("Log aggregation " + pluginId, true); //$NON-NLS-1$
+			aggregationTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					summarizeAggregates();
+				}
+			}, period, period);
+		}
+	}
+
+	/**
+	 * Logs the summaries of the errors aggregated since their last summary, and forgets
+	 * the aggregated errors.
+	 */
+	public void flushAggregates() {
+		final ConcurrentMap<String, Aggregate> oldAggregates = aggregates;
+		aggregates = new ConcurrentHashMap<String, Aggregate>();
+		final long now = System.currentTimeMillis();
+		for (final Aggregate aggregate : oldAggregates.values()) {
+			final IStatus summary = aggregate.close(now);
+			if (summary != null) {
+				limit(summary);
+			}
+		}
+	}
+
+	/**
+	 * Logs the summaries of the errors due for a summary, and forgets the errors that did
+	 * not occur during the last period.
+	 */
+	private void summarizeAggregates() {
+		final long period = aggregationPeriod;
+		final long now = System.currentTimeMillis();
+		final ConcurrentMap<String, Aggregate> currentAggregates = aggregates;
+		for (final Entry<String, Aggregate> entry : currentAggregates.entrySet()) {
+			final Aggregate aggregate = entry.getValue();
+			final IStatus summary = aggregate.summarizeIfDue(now, period);
+			if (summary != null) {
+				limit(summary);
+			} else if (aggregate.closeIfIdle(now, period)) {
+				currentAggregates.remove(entry.getKey(), aggregate);
+			}
+		}
+	}
+
+	private void limit(IStatus status) {
+		final int slot = slot(status.getSeverity());
+		final long suppressed = limiters[slot].acquire();
+		if (suppressed > 0) {
+			enqueueSuppressed(slot, suppressed);
+		}
+		if (suppressed >= 0) {
+			enqueue(status);
+		}
+	}
+
+	private void enqueueSuppressed(int slot, long suppressed) {
+		enqueue(new Status(IStatus.WARNING, pluginId, suppressed + " " + SEVERITIES[slot] //$NON-NLS-1$
+				+ " messages suppressed by the rate limit")); //$NON-NLS-1$
+	}
+
+	/**
+	 * Logs the number of statuses suppressed by the rate limits in the current second.
+	 */
+	private void flushSuppressed() {
+		for (int slot = 0; slot < limiters.length; slot++) {
+			final long suppressed = limiters[slot].takeSuppressed();
+			if (suppressed > 0) {
+				enqueueSuppressed(slot, suppressed);
+			}
+		}
+	}
+
+	/**
+	 * Limits the number of statuses of the given severity logged per second.
+	 * 
+	 * @param severity The severity.
+	 * @param limit The maximum number of statuses per second, or {@code 0} for no limit.
+	 */
+	public void setRateLimit(int severity, int limit) {
+		Assert.isLegal(limit >= 0);
+		limiters[slot(severity)].limit = limit;
+	}
+
+	/**
+	 * Returns the number of statuses dropped because the buffer was full.
+	 * 
+	 * @return the number of dropped statuses.
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * Enables or disables the asynchronous mode, with a buffer of
+	 * {@value #DEFAULT_CAPACITY} statuses.
+	 * 
+	 * @param asynchronous {@code true} to enable the asynchronous mode.
+	 */
+	public void setAsynchronous(boolean asynchronous) {
+		if (asynchronous) {
+			setAsynchronous(DEFAULT_CAPACITY);
+		} else {
+			stopWriter();
+		}
+	}
+
+	/**
+	 * Enables the asynchronous mode, with a buffer of the given capacity.
+	 * 
+	 * @param capacity The maximum number of statuses waiting to be written.
+	 */
+	public synchronized void setAsynchronous(int capacity) {
+		stopWriter();
+		final BlockingQueue<LogRecord> newQueue = new ArrayBlockingQueue<LogRecord>(capacity);
+		writer = new LogWriter(newQueue);
+		writer.start();
+		queue = newQueue;
+	}
+
+	/**
+	 * Indicates if this pipeline is in asynchronous mode.
+	 * 
+	 * @return {@code true} if this pipeline is in asynchronous mode.
+	 */
+	public boolean isAsynchronous() {
+		return queue != null;
+	}
+
+	/**
+	 * Disables the aggregation and leaves the asynchronous mode, after having written the
+	 * summaries of the aggregated errors, the counts of the statuses suppressed by the
+	 * rate limits and the queued statuses, and closes the structured log file.
+	 */
+	public synchronized void close() {
+		setAggregationPeriod(0);
+		flushSuppressed();
+		stopWriter();
+		// Forgetting the sink, which would reopen its file on the next status
+		final JsonLogSink sink = structuredSink;
+		structuredSink = null;
+		closeStructuredSink(sink);
+	}
+
+	private synchronized void stopWriter() {
+		final BlockingQueue<LogRecord> oldQueue = queue;
+		if (oldQueue != null) {
+			queue = null;
+			// Not interrupting the writer, which would close the channel of the structured log
+			writer.running = false;
+			try {
+				writer.join(TimeUnit.SECONDS.toMillis(5));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			writer = null;
+			// Writing the statuses still queued
+			final List<LogRecord> records = new ArrayList<LogRecord>(oldQueue.size());
+			oldQueue.drainTo(records);
+			write(records);
+		}
+	}
+
+	/**
+	 * Sets the structured log in which the statuses are also written.
+	 * 
+	 * @param sink The structured log, or {@code null} to disable it.
+	 */
+	public synchronized void setStructuredSink(JsonLogSink sink) {
+		final JsonLogSink oldSink = structuredSink;
+		structuredSink = sink;
+		if (oldSink != sink) {
+			closeStructuredSink(oldSink);
+		}
+	}
+
+	/**
+	 * Returns the structured log in which the statuses are also written.
+	 * 
+	 * @return the structured log, or {@code null} if it is disabled.
+	 */
+	public JsonLogSink getStructuredSink() {
+		return structuredSink;
+	}
+
+	/**
+	 * Writes the given status into the log.
+	 * 
+	 * @param status The status to write.
+	 */
+	protected void write(IStatus status) {
+		log.log(status);
+	}
+
+	/**
+	 * Aggregates the given error.
+	 * 
+	 * @return {@code true} if the error must be logged in full.
+	 */
+	private boolean aggregate(IStatus status) {
+		final String fingerprint = fingerprint(status);
+		while (true) {
+			final long now = System.currentTimeMillis();
+			final ConcurrentMap<String, Aggregate> currentAggregates = aggregates;
+			Aggregate aggregate = currentAggregates.get(fingerprint);
+			if (aggregate == null) {
+				if (currentAggregates.size() >= MAX_AGGREGATES) {
+					flushAggregates();
+					continue;
+				}// else
+				aggregate = currentAggregates.putIfAbsent(fingerprint, new Aggregate(status, now));
+				if (aggregate == null) {
+					return true;
+				}
+			}
+			final IStatus summary = aggregate.occurred(status, now, aggregationPeriod);
+			if (summary == FULL) {
+				return true;
+			} else if (summary != RETRY) {
+				if (summary != null) {
+					limit(summary);
+				}
+				return false;
+			}// else
+			// The aggregate has been flushed meanwhile
+			currentAggregates.remove(fingerprint, aggregate);
+		}
+	}
+
+	private String fingerprint(IStatus status) {
+		final Throwable exception = status.getException();
+		final StringBuilder fingerprint = new StringBuilder(exception.getClass().getName());
+		fingerprint.append('|').append(status.getSeverity());
+		fingerprint.append('|').append(template(status.getMessage()));
+		fingerprint.append('|').append(template(exception.getMessage()));
+		final StackTraceElement[] frames = exception.getStackTrace();
+		for (int i = 0; i < frames.length && i < FINGERPRINT_FRAMES; i++) {
+			fingerprint.append('|').append(frames[i].getClassName()).append('.').append(frames[i].getMethodName())
+					.append(':').append(frames[i].getLineNumber());
+		}
+		return fingerprint.toString();
+	}
+
+	private static String template(String message) {
+		return message == null ? "" : NUMBERS.matcher(message).replaceAll("#"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private void enqueue(IStatus status) {
+		final LogRecord record = new LogRecord(status);
+		final BlockingQueue<LogRecord> currentQueue = queue;
+		if (currentQueue == null) {
+			write(Collections.singletonList(record));
+		} else if (!currentQueue.offer(record)) {
+			dropped.incrementAndGet();
+		}
+	}
+
+	private void drain(LogWriter logWriter) {
+		final List<LogRecord> batch = new ArrayList<LogRecord>(BATCH_SIZE);
+		try {
+			while (true) {
+				final LogRecord record = logWriter.recordQueue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+				if (record == null) {
+					if (!logWriter.running) {
+						return;
+					}// else
+					continue;
+				}// else
+				batch.add(record);
+				logWriter.recordQueue.drainTo(batch, BATCH_SIZE - 1);
+				write(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			// The remaining statuses are written by close()
+		}
+	}
+
+	private void write(List<LogRecord> records) {
+		for (final LogRecord record : records) {
+			try {
+				write(record.status);
+			} catch (RuntimeException e) {
+				// The log must not fail the writer
+			}
+		}
+		final JsonLogSink sink = structuredSink;
+		if (sink != null) {
+			try {
+				for (final LogRecord record : records) {
+					sink.append(record.status, pluginId, record.thread, record.time);
+				}
+				sink.flush();
+			} catch (IOException e) {
+				structuredSink = null;
+				closeStructuredSink(sink);
+				log.log(new Status(IStatus.ERROR, pluginId, "Structured log disabled after a write failure", e)); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private void closeStructuredSink(JsonLogSink sink) {
+		if (sink != null) {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				log.log(new Status(IStatus.ERROR, pluginId, "Cannot close the structured log", e)); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private static int slot(int severity) {
+		switch (severity) {
+		case IStatus.INFO:
+			return 1;
+		case IStatus.WARNING:
+			return 2;
+		case IStatus.ERROR:
+			return 3;
+		case IStatus.CANCEL:
+			return 4;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Thread writing the statuses queued in asynchronous mode, until it is stopped and the
+	 * queue is empty.
+	 */
+	private final class LogWriter extends Thread {
+
+		final BlockingQueue<LogRecord> recordQueue;
+
+		volatile boolean running = true;
+
+		LogWriter(BlockingQueue<LogRecord> recordQueue) {
+			super("Log writer " + pluginId); //$NON-NLS-1$
+			this.recordQueue = recordQueue;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			drain(this);
+		}
+	}
+
+	/**
+	 * Status logged by a thread.
+	 */
+	private static final class LogRecord {
+
+		final IStatus status;
+		final String thread;
+		final long time;
+
+		LogRecord(IStatus status) {
+			this.status = status;
+			thread = Thread.currentThread().getName();
+			time = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Occurrences of an aggregated error.
+	 */
+	private final class Aggregate {
+
+		private final IStatus first;
+
+		private IStatus last;
+		private int count;
+		private long lastSummary;
+		private long lastOccurrence;
+		private boolean closed;
+
+		Aggregate(IStatus first, long now) {
+			this.first = first;
+			lastSummary = now;
+			lastOccurrence = now;
+		}
+
+		/**
+		 * Counts a new occurrence of the error.
+		 * 
+		 * @return {@code FULL} if the occurrence must be logged in full, {@code RETRY} if
+		 *         this aggregate is closed, the summary to log or {@code null}.
+		 */
+		synchronized IStatus occurred(IStatus status, long now, long period) {
+			if (closed) {
+				return RETRY;
+			}// else
+			if (count == 0 && now - lastOccurrence >= period) {
+				// The error is back after a quiet period
+				lastSummary = now;
+				lastOccurrence = now;
+				return FULL;
+			}// else
+			last = status;
+			count++;
+			lastOccurrence = now;
+			return now - lastSummary >= period ? summarize(now) : null;
+		}
+
+		synchronized IStatus summarizeIfDue(long now, long period) {
+			return now - lastSummary >= period ? summarize(now) : null;
+		}
+
+		/**
+		 * Closes this aggregate if the error did not occur during the last period.
+		 * 
+		 * @return {@code true} if this aggregate has been closed.
+		 */
+		synchronized boolean closeIfIdle(long now, long period) {
+			if (count == 0 && now - lastOccurrence >= period) {
+				closed = true;
+			}
+			return closed;
+		}
+
+		/**
+		 * Closes this aggregate, the following occurrences being counted by a new one.
+		 * 
+		 * @return the last summary to log or {@code null}.
+		 */
+		synchronized IStatus close(long now) {
+			closed = true;
+			return summarize(now);
+		}
+
+		private IStatus summarize(long now) {
+			if (count == 0) {
+				return null;
+			}// else
+			final Throwable exception = first.getException();
+			final MultiStatus summary = new MultiStatus(pluginId, first.getCode(), count + " more occurrences of " //$NON-NLS-1$
+					+ exception.getClass().getName() + " : " + first.getMessage() + " in the last " //$NON-NLS-1$ //$NON-NLS-2$
+					+ TimeUnit.MILLISECONDS.toSeconds(now - lastSummary) + " s", null); //$NON-NLS-1$
+			summary.add(new Status(last.getSeverity(), pluginId, "Last occurrence : " + last.getMessage())); //$NON-NLS-1$
+			count = 0;
+			lastSummary = now;
+			return summary;
+		}
+	}
+
+	/**
+	 * Limits the number of statuses per second of a severity.
+	 */
+	private static final class RateLimiter {
+
+		volatile int limit;
+
+		private long window;
+		private int count;
+		private long suppressed;
+
+		/**
+		 * Counts a new status.
+		 * 
+		 * @return {@code -1} if the status is suppressed, else the number of statuses
+		 *         suppressed during the previous second.
+		 */
+		long acquire() {
+			if (limit == 0) {
+				return 0;
+			}// else
+			final long now = System.nanoTime() / TimeUnit.SECONDS.toNanos(1);
+			synchronized (this) {
+				long previous = 0;
+				if (now != window) {
+					window = now;
+					count = 0;
+					previous = suppressed;
+					suppressed = 0;
+				}
+				if (++count > limit) {
+					suppressed++;
+					return -1;
+				}// else
+				return previous;
+			}
+		}
+
+		/**
+		 * Returns and resets the number of statuses suppressed in the current second.
+		 * 
+		 * @return the number of statuses suppressed in the current second.
+		 */
+		synchronized long takeSuppressed() {
+			final long result = suppressed;
+			suppressed = 0;
+			return result;
+		}
+	}
+}
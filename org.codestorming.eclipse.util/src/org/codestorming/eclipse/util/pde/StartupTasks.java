@@ -0,0 +1,160 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.pde;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IStatus;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+/**
+ * Startup tasks of a {@link BundleActivatorWithLog}, run in a background thread once the
+ * bundle is started.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+final class StartupTasks implements BundleListener {
+
+	private final BundleActivatorWithLog activator;
+
+	private final List<Task> tasks = new ArrayList<Task>();
+
+	// Duration of each task, in milliseconds
+	private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+
+	private final FutureTask<Void> ready = new FutureTask<Void>(new Callable<Void>() {
+		@Override
+		public Void call() throws Exception {
+			runTasks();
+			return null;
+		}
+	});
+
+	private BundleContext context;
+
+	private boolean started;
+
+	StartupTasks(BundleActivatorWithLog activator) {
+		this.activator = activator;
+	}
+
+	synchronized void register(String name, int priority, Runnable runnable) {
+		if (started) {
+			throw new IllegalStateException("The startup tasks of " + activator.getPluginID() //$NON-NLS-1$
+					+ " are already running"); //$NON-NLS-1$
+		}// else
+		tasks.add(new Task(name, priority, runnable, tasks.size()));
+	}
+
+	/**
+	 * Waits for the bundle to be started before running the tasks.
+	 * 
+	 * @param bundleContext The context of the bundle.
+	 */
+	void listen(BundleContext bundleContext) {
+		context = bundleContext;
+		bundleContext.addBundleListener(this);
+	}
+
+	@Override
+	public void bundleChanged(BundleEvent event) {
+		if (event.getBundle() == context.getBundle() && event.getType() == BundleEvent.STARTED) {
+			start();
+		}
+	}
+
+	void stop() {
+		if (context != null) {
+			context.removeBundleListener(this);
+		}
+		ready.cancel(true);
+	}
+
+	FutureTask<Void> getReady() {
+		return ready;
+	}
+
+	synchronized Map<String, Long> getTimings() {
+		return new LinkedHashMap<String, Long>(timings);
+	}
+
+	private void start() {
+		synchronized (this) {
+			if (started) {
+				return;
+			}// else
+			started = true;
+		}
+		context.removeBundleListener(this);
+		final Thread thread = new Thread(ready, "Startup of " + activator.getPluginID()); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.setPriority(Thread.NORM_PRIORITY - 1);
+		thread.start();
+	}
+
+	private void runTasks() {
+		final List<Task> sorted;
+		synchronized (this) {
+			sorted = new ArrayList<Task>(tasks);
+		}
+		Collections.sort(sorted, new Comparator<Task>() {
+			@Override
+			public int compare(Task t1, Task t2) {
+				if (t1.priority != t2.priority) {
+					return t1.priority > t2.priority ? -1 : 1;
+				}// else
+				return t1.order - t2.order;
+			}
+		});
+		for (final Task task : sorted) {
+			if (Thread.currentThread().isInterrupted()) {
+				return;
+			}// else
+			final long start = System.nanoTime();
+			try {
+				task.runnable.run();
+			} catch (RuntimeException e) {
+				activator.log("Startup task " + task.name + " failed", IStatus.ERROR, e); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			final long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			synchronized (this) {
+				timings.put(task.name, Long.valueOf(time));
+			}
+		}
+	}
+
+	private static final class Task {
+
+		final String name;
+		final int priority;
+		final Runnable runnable;
+		final int order;
+
+		Task(String name, int priority, Runnable runnable, int order) {
+			this.name = name;
+			this.priority = priority;
+			this.runnable = runnable;
+			this.order = order;
+		}
+	}
+}
@@ -11,9 +11,13 @@
  ****************************************************************************/
 package org.codestorming.eclipse.util.pde;
 
+import java.io.File;
+
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
+import org.osgi.framework.BundleContext;
 
 /**
  * Singleton {@link AbstractUIPlugin} with log methods.
@@ -22,15 +26,60 @@ import org.eclipse.ui.plugin.AbstractUIPlugin;
  */
 public abstract class UIPluginWithLog extends AbstractUIPlugin {
 
+	private volatile LogPipeline logPipeline;
+
+	/**
+	 * Returns the {@link LogPipeline} through which this plug-in logs.
+	 * 
+	 * @return the {@link LogPipeline} of this plug-in.
+	 * @since 3.1
+	 */
+	public LogPipeline getLogPipeline() {
+		LogPipeline pipeline = logPipeline;
+		if (pipeline == null) {
+			synchronized (this) {
+				pipeline = logPipeline;
+				if (pipeline == null) {
+					pipeline = new LogPipeline(getLog(), getPluginID());
+					logPipeline = pipeline;
+				}
+			}
+		}
+		return pipeline;
+	}
+
+	@Override
+	public void stop(BundleContext context) throws Exception {
+		final LogPipeline pipeline = logPipeline;
+		if (pipeline != null) {
+			pipeline.close();
+		}
+		super.stop(context);
+	}
+
 	/**
 	 * Logs the given status. The status is distributed to the log listeners installed on
 	 * this log and then to the log listeners installed on the platform.
+	 * <p>
+	 * The status goes through the {@link #getLogPipeline() log pipeline} of this plug-in.
 	 * 
 	 * @param status the status to log.
 	 * @since 3.0
 	 */
 	public void log(IStatus status) {
-		getLog().log(status);
+		getLogPipeline().log(status);
+	}
+
+	/**
+	 * Enables the structured log of this plug-in, written as JSON lines into the
+	 * {@value JsonLogSink#STATE_FOLDER} folder of its state location.
+	 * 
+	 * @see JsonLogSink
+	 * @since 3.1
+	 */
+	public void enableStructuredLog() {
+		final File directory = Platform.getStateLocation(getBundle()).append(JsonLogSink.STATE_FOLDER).toFile();
+		getLogPipeline().setStructuredSink(new JsonLogSink(directory));
 	}
 
 	/**
@@ -12,13 +12,15 @@
 package org.codestorming.eclipse.util.preferences;
 
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.ProjectScope;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.ui.preferences.ScopedPreferenceStore;
 
 /**
  * Base implementation for providing a plugin properties from a {@link IProject project}.
+ * <p>
+ * Providers declaring their properties with {@link PropertyKeys} can read them through a
+ * typed {@link #snapshot() snapshot}, for instance once per build.
  * 
  * @author Thaedrik <thaedrik@gmail.com>
  */
@@ -29,6 +31,7 @@ public abstract class AbstractProjectPropertyProvider {
 	 */
 	protected final IProject project;
 
+	// Keeps the shared store alive while this provider is used.
 	private ScopedPreferenceStore preferenceStore;
 
 	/**
@@ -45,20 +48,65 @@ public abstract class AbstractProjectPropertyProvider {
 	 * Returns the {@link IPreferenceStore} for the project specified on this
 	 * {@link AbstractProjectPropertyProvider}.
 	 * <p>
-	 * Uses the specified {@link IProject} and {@link #getId()} to create a
-	 * {@link ScopedPreferenceStore}.
+	 * Uses the specified {@link IProject} and {@link #getId()} to retrieve the
+	 * {@link ScopedPreferenceStore} shared through the {@link ProjectPreferenceStores}.
 	 * 
 	 * @return the {@link IPreferenceStore} for the project specified on this
 	 *         {@link AbstractProjectPropertyProvider}.
 	 */
 	protected IPreferenceStore getPreferenceStore() {
-		if (preferenceStore == null) {
-			ProjectScope scope = new ProjectScope(project);
-			preferenceStore = new ScopedPreferenceStore(scope, getId());
-		}
+		preferenceStore = ProjectPreferenceStores.getStore(project, getId());
 		return preferenceStore;
 	}
 
+	/**
+	 * Returns the keys of the properties provided by this provider.
+	 * <p>
+	 * <em>Returns {@code null} by default.</em>
+	 * 
+	 * @return the keys of the properties provided by this provider, or {@code null} if
+	 *         they are not declared.
+	 * @since 3.1
+	 */
+	protected PropertyKeys getPropertyKeys() {
+		return null;
+	}
+
+	/**
+	 * Returns an immutable snapshot of the current values of the properties declared by
+	 * {@link #getPropertyKeys()}.
+	 * 
+	 * @return the {@link PropertySnapshot} of the properties.
+	 * @throws IllegalStateException if this provider does not declare its properties.
+	 * @since 3.1
+	 */
+	public PropertySnapshot snapshot() {
+		final PropertyKeys keys = getPropertyKeys();
+		if (keys == null) {
+			throw new IllegalStateException(getClass().getName() + " does not declare its property keys"); //$NON-NLS-1$
+		}// else
+		return keys.snapshot(getPreferenceStore());
+	}
+
+	/**
+	 * Sets the value of the given property, the write being batched with the other
+	 * property changes by the {@link PreferenceWriteBatcher}.
+	 * <p>
+	 * The new value is immediately visible through the {@link #getPreferenceStore()
+	 * preference store}, and saved once the batch is flushed.
+	 * 
+	 * @param name The name of the property.
+	 * @param value The new value of the property, or {@code null} to remove it.
+	 * @since 3.1
+	 */
+	protected void setPropertyLater(String name, String value) {
+		if (value == null) {
+			PreferenceWriteBatcher.remove(project, getId(), name);
+		} else {
+			PreferenceWriteBatcher.setValue(project, getId(), name, value);
+		}
+	}
+
 	/**
 	 * Returns the identifier of the preference store.
 	 * 
@@ -12,16 +12,15 @@
 package org.codestorming.eclipse.util.preferences;
 
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.ProjectScope;
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.ui.dialogs.PropertyPage;
-import org.eclipse.ui.preferences.ScopedPreferenceStore;
 
 /**
  * Abstract implementation of a property page.
  * <p>
- * This implementation provides the {@link IPreferenceStore}.
+ * This implementation provides the {@link IPreferenceStore}, shared through the
+ * {@link ProjectPreferenceStores}.
  * 
  * @author Thaedrik <thaedrik@gmail.com>
  */
@@ -29,8 +28,7 @@ public abstract class AbstractPropertyPage extends PropertyPage {
 
 	@Override
 	protected IPreferenceStore doGetPreferenceStore() {
-		ProjectScope scope = new ProjectScope(getProject());
-		return new ScopedPreferenceStore(scope, getId());
+		return ProjectPreferenceStores.getStore(getProject(), getId());
 	}
 
 	/**
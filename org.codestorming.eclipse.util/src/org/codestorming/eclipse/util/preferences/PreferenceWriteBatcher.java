@@ -0,0 +1,219 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.preferences;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.codestorming.eclipse.util.EclipseUtil;
+import org.codestorming.eclipse.util.EclipseUtilActivator;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.resources.WorkspaceJob;
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.osgi.service.prefs.BackingStoreException;
+
+/**
+ * Batches the writes of project preferences.
+ * <p>
+ * The changes are applied at once to the preference nodes of the projects, and are
+ * therefore immediately visible through these nodes and the
+ * {@link ProjectPreferenceStores stores} of the projects. Only the flushes of the
+ * modified nodes are postponed, after a delay without new changes. Each node is flushed
+ * once, and all the nodes are flushed in a single workspace operation, firing a single
+ * resource delta.
+ * <p>
+ * The {@code .prefs} files are written by the preference nodes themselves, through
+ * {@link org.eclipse.core.resources.IFile#setContents(java.io.InputStream, int, IProgressMonitor)
+ * IFile.setContents()}, and not through a temporary file renamed afterwards : writing
+ * the files directly would get them out of sync with the nodes, which would then reload
+ * them and notify their listeners.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+public final class PreferenceWriteBatcher {
+
+	/**
+	 * Default delay (in milliseconds) without new changes before flushing.
+	 */
+	public static final long DEFAULT_DELAY = 500;
+
+	// Maximum time (in delays) a change can wait while new changes keep coming.
+	private static final int MAX_DELAYS = 10;
+
+	// Nodes modified since the last flush.
+	private static final Set<IEclipsePreferences> dirty = new LinkedHashSet<IEclipsePreferences>();
+
+	private static final FlushJob job = new FlushJob();
+
+	private static long delay = DEFAULT_DELAY;
+
+	// Time of the oldest pending change, 0 if there is none.
+	private static long firstPending;
+
+	// Suppressing default constructor, ensuring non-instantiability
+	private PreferenceWriteBatcher() {}
+
+	/**
+	 * Sets the value of the given key in the preferences of the given project.
+	 * 
+	 * @param project The project (must <strong>not</strong> be {@code null}).
+	 * @param qualifier The qualifier of the preferences, usually a plug-in ID.
+	 * @param key The key of the preference.
+	 * @param value The new value of the preference (must <strong>not</strong> be
+	 *        {@code null}).
+	 */
+	public static void setValue(IProject project, String qualifier, String key, String value) {
+		Assert.isNotNull(value);
+		put(project, qualifier, key, value);
+	}
+
+	/**
+	 * Removes the given key from the preferences of the given project.
+	 * 
+	 * @param project The project (must <strong>not</strong> be {@code null}).
+	 * @param qualifier The qualifier of the preferences, usually a plug-in ID.
+	 * @param key The key of the preference.
+	 */
+	public static void remove(IProject project, String qualifier, String key) {
+		put(project, qualifier, key, null);
+	}
+
+	/**
+	 * Sets the delay (in milliseconds) without new changes before flushing.
+	 * 
+	 * @param delay The delay, in milliseconds.
+	 */
+	public static synchronized void setDelay(long delay) {
+		Assert.isLegal(delay >= 0);
+		PreferenceWriteBatcher.delay = delay;
+	}
+
+	/**
+	 * Returns the number of preference nodes with pending changes.
+	 * 
+	 * @return the number of preference nodes with pending changes.
+	 */
+	public static synchronized int getPendingCount() {
+		return dirty.size();
+	}
+
+	/**
+	 * Flushes the pending changes now.
+	 * <p>
+	 * Must not be called while holding a scheduling rule not containing the workspace
+	 * root.
+	 * 
+	 * @param monitor The progress monitor (may be {@code null}).
+	 * @throws CoreException if the workspace operation failed.
+	 */
+	public static void flush(IProgressMonitor monitor) throws CoreException {
+		job.cancel();
+		EclipseUtil.getWorkspace().run(new IWorkspaceRunnable() {
+			@Override
+			public void run(IProgressMonitor monitor) throws CoreException {
+				final IStatus status = flush(drain(), monitor);
+				if (!status.isOK()) {
+					throw new CoreException(status);
+				}
+			}
+		}, EclipseUtil.getWorkspace().getRoot(), 0, monitor);
+	}
+
+	private static synchronized void put(IProject project, String qualifier, String key, String value) {
+		Assert.isNotNull(project);
+		Assert.isNotNull(qualifier);
+		Assert.isNotNull(key);
+		final IEclipsePreferences node = new ProjectScope(project).getNode(qualifier);
+		if (value == null) {
+			node.remove(key);
+		} else {
+			node.put(key, value);
+		}
+		dirty.add(node);
+		// Postponing the flush, within the limit of the oldest change
+		final long now = System.currentTimeMillis();
+		if (firstPending == 0) {
+			firstPending = now;
+		}
+		final long wait = Math.max(0, Math.min(delay, firstPending + delay * MAX_DELAYS - now));
+		// A sleeping or waiting job ignores schedule(), keeping its first deadline
+		switch (job.getState()) {
+		case Job.SLEEPING:
+			job.wakeUp(wait);
+			break;
+		case Job.WAITING:
+			job.cancel();
+			job.schedule(wait);
+			break;
+		default:
+			// Running again after the current flush, if any
+			job.schedule(wait);
+		}
+	}
+
+	private static synchronized Set<IEclipsePreferences> drain() {
+		final Set<IEclipsePreferences> nodes = new LinkedHashSet<IEclipsePreferences>(dirty);
+		dirty.clear();
+		firstPending = 0;
+		return nodes;
+	}
+
+	private static IStatus flush(Set<IEclipsePreferences> nodes, IProgressMonitor monitor) {
+		final SubMonitor progress = SubMonitor.convert(monitor, nodes.size());
+		IStatus status = Status.OK_STATUS;
+		for (final IEclipsePreferences node : nodes) {
+			try {
+				node.flush();
+			} catch (BackingStoreException e) {
+				status = error("Cannot save the preferences " + node.absolutePath(), e); //$NON-NLS-1$
+			} catch (IllegalStateException e) {
+				// The node has been removed with its project
+			}
+			progress.worked(1);
+		}
+		return status;
+	}
+
+	private static IStatus error(String message, Exception exception) {
+		final IStatus status = new Status(IStatus.ERROR, EclipseUtilActivator.PLUGIN_ID, message, exception);
+		EclipseUtilActivator.getDefault().log(message, IStatus.ERROR, exception);
+		return status;
+	}
+
+	/**
+	 * Flushes the pending changes once the delay is elapsed.
+	 */
+	private static class FlushJob extends WorkspaceJob {
+
+		FlushJob() {
+			super("Saving project preferences"); //$NON-NLS-1$
+			setSystem(true);
+			setRule(EclipseUtil.getWorkspace().getRoot());
+		}
+
+		@Override
+		public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException {
+			return flush(drain(), monitor != null ? monitor : new NullProgressMonitor());
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.preferences;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.codestorming.eclipse.util.EclipseUtil;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ProjectScope;
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.ui.preferences.ScopedPreferenceStore;
+
+/**
+ * Shared pool of the {@link ScopedPreferenceStore ScopedPreferenceStores} of the
+ * projects, identified by their project and their qualifier.
+ * <p>
+ * The stores are weakly referenced by the pool : a store is kept while it is used. The
+ * stores read through the live preference nodes of the projects, which are reloaded
+ * when their {@code .settings/*.prefs} file changes. The store of a qualifier is
+ * therefore only forgotten when the corresponding file is removed, and the stores of a
+ * project when the project is closed or removed.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+public final class ProjectPreferenceStores {
+
+	private static final String SETTINGS_FOLDER = ".settings"; //$NON-NLS-1$
+	private static final String PREFS_EXTENSION = "prefs"; //$NON-NLS-1$
+
+	private static final ConcurrentMap<StoreKey, StoreReference> stores = new ConcurrentHashMap<StoreKey, StoreReference>();
+
+	// Queue of the collected stores.
+	private static final ReferenceQueue<ScopedPreferenceStore> queue = new ReferenceQueue<ScopedPreferenceStore>();
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	// Listener registered in the workspace, null if not listening.
+	private static SettingsListener listener;
+
+	// Suppressing default constructor, ensuring non-instantiability
+	private ProjectPreferenceStores() {}
+
+	/**
+	 * Returns the shared {@link ScopedPreferenceStore} of the given project and
+	 * qualifier.
+	 * 
+	 * @param project The project (must <strong>not</strong> be {@code null}).
+	 * @param qualifier The qualifier of the preference store, usually a plug-in ID.
+	 * @return the shared {@link ScopedPreferenceStore}.
+	 */
+	public static ScopedPreferenceStore getStore(IProject project, String qualifier) {
+		Assert.isNotNull(project);
+		Assert.isNotNull(qualifier);
+		expungeCollectedStores();
+		final StoreKey key = new StoreKey(project, qualifier);
+		StoreReference reference = stores.get(key);
+		ScopedPreferenceStore store = reference != null ? reference.get() : null;
+		if (store != null) {
+			hits.incrementAndGet();
+			return store;
+		}// else
+		misses.incrementAndGet();
+		listenToWorkspace();
+		store = new ScopedPreferenceStore(new ProjectScope(project), qualifier);
+		final StoreReference newReference = new StoreReference(key, store);
+		while (true) {
+			reference = stores.putIfAbsent(key, newReference);
+			if (reference == null) {
+				return store;
+			}// else
+			final ScopedPreferenceStore existing = reference.get();
+			if (existing != null) {
+				// Created concurrently by another thread
+				return existing;
+			} else if (stores.replace(key, reference, newReference)) {
+				return store;
+			}
+		}
+	}
+
+	/**
+	 * Forgets the store of the given project and qualifier.
+	 * 
+	 * @param project The project.
+	 * @param qualifier The qualifier of the preference store.
+	 */
+	public static void invalidate(IProject project, String qualifier) {
+		stores.remove(new StoreKey(project, qualifier));
+	}
+
+	/**
+	 * Forgets the stores of the given project.
+	 * 
+	 * @param project The project.
+	 */
+	public static void invalidate(IProject project) {
+		for (final Iterator<StoreKey> iter = stores.keySet().iterator(); iter.hasNext();) {
+			if (iter.next().project.equals(project)) {
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of requests for which a shared store was found.
+	 * 
+	 * @return the number of requests for which a shared store was found.
+	 */
+	public static long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of requests for which a new store was created.
+	 * 
+	 * @return the number of requests for which a new store was created.
+	 */
+	public static long getMissCount() {
+		return misses.get();
+	}
+
+	private static void expungeCollectedStores() {
+		StoreReference reference;
+		while ((reference = (StoreReference) queue.poll()) != null) {
+			stores.remove(reference.key, reference);
+		}
+	}
+
+	/**
+	 * Stops listening to the workspace and forgets all the stores.
+	 * <p>
+	 * Called when the plug-in stops ; the pool listens again to the workspace on the next
+	 * request.
+	 */
+	public static synchronized void dispose() {
+		if (listener != null) {
+			EclipseUtil.getWorkspace().removeResourceChangeListener(listener);
+			listener = null;
+		}
+		stores.clear();
+	}
+
+	private static synchronized void listenToWorkspace() {
+		if (listener == null) {
+			listener = new SettingsListener();
+			EclipseUtil.getWorkspace().addResourceChangeListener(listener, IResourceChangeEvent.POST_CHANGE);
+		}
+	}
+
+	/**
+	 * Forgets the stores whose settings file has been removed.
+	 */
+	private static class SettingsListener implements IResourceChangeListener {
+
+		@Override
+		public void resourceChanged(IResourceChangeEvent event) {
+			final IResourceDelta delta = event.getDelta();
+			if (delta == null || stores.isEmpty()) {
+				return;
+			}// else
+			for (final IResourceDelta projectDelta : delta.getAffectedChildren()) {
+				final IProject project = (IProject) projectDelta.getResource();
+				if (projectDelta.getKind() == IResourceDelta.REMOVED
+						|| (projectDelta.getFlags() & IResourceDelta.OPEN) != 0) {
+					invalidate(project);
+					continue;
+				}// else
+				final IResourceDelta settingsDelta = projectDelta.findMember(new Path(SETTINGS_FOLDER));
+				if (settingsDelta != null) {
+					for (final IResourceDelta fileDelta : settingsDelta.getAffectedChildren()) {
+						final IResource file = fileDelta.getResource();
+						if (fileDelta.getKind() == IResourceDelta.REMOVED && file.getType() == IResource.FILE
+								&& PREFS_EXTENSION.equals(file.getFileExtension())) {
+							final String name = file.getName();
+							invalidate(project, name.substring(0, name.length() - PREFS_EXTENSION.length() - 1));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static final class StoreKey {
+
+		final IProject project;
+		final String qualifier;
+
+		StoreKey(IProject project, String qualifier) {
+			this.project = project;
+			this.qualifier = qualifier;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}// else
+			if (!(obj instanceof StoreKey)) {
+				return false;
+			}// else
+			final StoreKey other = (StoreKey) obj;
+			return project.equals(other.project) && qualifier.equals(other.qualifier);
+		}
+
+		@Override
+		public int hashCode() {
+			return project.hashCode() * 31 + qualifier.hashCode();
+		}
+	}
+
+	private static final class StoreReference extends WeakReference<ScopedPreferenceStore> {
+
+		final StoreKey key;
+
+		StoreReference(StoreKey key, ScopedPreferenceStore store) {
+			super(store, queue);
+			this.key = key;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.preferences;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+
+/**
+ * Typed key of a project property, declared through {@link PropertyKeys} and read from a
+ * {@link PropertySnapshot}.
+ * <p>
+ * Each key has a default value, used when the property is not defined in the
+ * preference store.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+public abstract class PropertyKey {
+
+	private final String name;
+
+	// Index of the value in the snapshot array of the key type.
+	final int slot;
+
+	PropertyKey(String name, int slot) {
+		this.name = name;
+		this.slot = slot;
+	}
+
+	/**
+	 * Returns the name of the property in the preference store.
+	 * 
+	 * @return the name of the property.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Reads the value of this property from the given store into the given snapshot.
+	 * 
+	 * @param store The preference store.
+	 * @param snapshot The snapshot being filled.
+	 */
+	abstract void read(IPreferenceStore store, PropertySnapshot snapshot);
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * Key of an {@code int} property.
+	 */
+	public static final class IntKey extends PropertyKey {
+
+		private final int defaultValue;
+
+		IntKey(String name, int slot, int defaultValue) {
+			super(name, slot);
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		void read(IPreferenceStore store, PropertySnapshot snapshot) {
+			snapshot.ints[slot] = store.contains(getName()) ? store.getInt(getName()) : defaultValue;
+		}
+	}
+
+	/**
+	 * Key of a {@code long} property.
+	 */
+	public static final class LongKey extends PropertyKey {
+
+		private final long defaultValue;
+
+		LongKey(String name, int slot, long defaultValue) {
+			super(name, slot);
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		void read(IPreferenceStore store, PropertySnapshot snapshot) {
+			snapshot.longs[slot] = store.contains(getName()) ? store.getLong(getName()) : defaultValue;
+		}
+	}
+
+	/**
+	 * Key of a {@code double} property.
+	 */
+	public static final class DoubleKey extends PropertyKey {
+
+		private final double defaultValue;
+
+		DoubleKey(String name, int slot, double defaultValue) {
+			super(name, slot);
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		void read(IPreferenceStore store, PropertySnapshot snapshot) {
+			snapshot.doubles[slot] = store.contains(getName()) ? store.getDouble(getName()) : defaultValue;
+		}
+	}
+
+	/**
+	 * Key of a {@code boolean} property.
+	 */
+	public static final class BooleanKey extends PropertyKey {
+
+		private final boolean defaultValue;
+
+		BooleanKey(String name, int slot, boolean defaultValue) {
+			super(name, slot);
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		void read(IPreferenceStore store, PropertySnapshot snapshot) {
+			snapshot.booleans[slot] = store.contains(getName()) ? store.getBoolean(getName()) : defaultValue;
+		}
+	}
+
+	/**
+	 * Key of a {@code String} property.
+	 */
+	public static final class StringKey extends PropertyKey {
+
+		private final String defaultValue;
+
+		StringKey(String name, int slot, String defaultValue) {
+			super(name, slot);
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		void read(IPreferenceStore store, PropertySnapshot snapshot) {
+			snapshot.strings[slot] = store.contains(getName()) ? store.getString(getName()) : defaultValue;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.preferences;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codestorming.eclipse.util.preferences.PropertyKey.BooleanKey;
+import org.codestorming.eclipse.util.preferences.PropertyKey.DoubleKey;
+import org.codestorming.eclipse.util.preferences.PropertyKey.IntKey;
+import org.codestorming.eclipse.util.preferences.PropertyKey.LongKey;
+import org.codestorming.eclipse.util.preferences.PropertyKey.StringKey;
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+/**
+ * Set of the typed {@link PropertyKey keys} of the properties of a plug-in.
+ * <p>
+ * The keys are usually declared once, as constants of an
+ * {@link AbstractProjectPropertyProvider} :
+ * 
+ * <pre>
+ * static final PropertyKeys KEYS = new PropertyKeys();
+ * static final IntKey MAX_ERRORS = KEYS.intKey(&quot;maxErrors&quot;, 100);
+ * static final BooleanKey STRICT = KEYS.booleanKey(&quot;strict&quot;, false);
+ * </pre>
+ * 
+ * Then a {@link PropertySnapshot} of these properties can be taken, whose values are read
+ * without parsing nor lookup.
+ * <p>
+ * A key must only be used with the snapshots of the {@code PropertyKeys} that declared
+ * it.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+public final class PropertyKeys {
+
+	private final List<PropertyKey> keys = new ArrayList<PropertyKey>();
+
+	// Number of keys of each type.
+	private int ints;
+	private int longs;
+	private int doubles;
+	private int booleans;
+	private int strings;
+
+	/**
+	 * Declares a new {@code int} property.
+	 * 
+	 * @param name The name of the property.
+	 * @param defaultValue The value of the property when it is not defined.
+	 * @return the key of the property.
+	 */
+	public synchronized IntKey intKey(String name, int defaultValue) {
+		return add(new IntKey(name, ints++, defaultValue));
+	}
+
+	/**
+	 * Declares a new {@code long} property.
+	 * 
+	 * @param name The name of the property.
+	 * @param defaultValue The value of the property when it is not defined.
+	 * @return the key of the property.
+	 */
+	public synchronized LongKey longKey(String name, long defaultValue) {
+		return add(new LongKey(name, longs++, defaultValue));
+	}
+
+	/**
+	 * Declares a new {@code double} property.
+	 * 
+	 * @param name The name of the property.
+	 * @param defaultValue The value of the property when it is not defined.
+	 * @return the key of the property.
+	 */
+	public synchronized DoubleKey doubleKey(String name, double defaultValue) {
+		return add(new DoubleKey(name, doubles++, defaultValue));
+	}
+
+	/**
+	 * Declares a new {@code boolean} property.
+	 * 
+	 * @param name The name of the property.
+	 * @param defaultValue The value of the property when it is not defined.
+	 * @return the key of the property.
+	 */
+	public synchronized BooleanKey booleanKey(String name, boolean defaultValue) {
+		return add(new BooleanKey(name, booleans++, defaultValue));
+	}
+
+	/**
+	 * Declares a new {@code String} property.
+	 * 
+	 * @param name The name of the property.
+	 * @param defaultValue The value of the property when it is not defined.
+	 * @return the key of the property.
+	 */
+	public synchronized StringKey stringKey(String name, String defaultValue) {
+		return add(new StringKey(name, strings++, defaultValue));
+	}
+
+	/**
+	 * Reads, in a single pass, the values of all the declared properties from the given
+	 * store.
+	 * 
+	 * @param store The preference store.
+	 * @return the {@link PropertySnapshot} of the declared properties.
+	 */
+	public synchronized PropertySnapshot snapshot(IPreferenceStore store) {
+		Assert.isNotNull(store);
+		final PropertySnapshot snapshot = new PropertySnapshot(ints, longs, doubles, booleans, strings);
+		for (final PropertyKey key : keys) {
+			key.read(store, snapshot);
+		}
+		return snapshot;
+	}
+
+	private <K extends PropertyKey> K add(K key) {
+		Assert.isNotNull(key.getName());
+		keys.add(key);
+		return key;
+	}
+}
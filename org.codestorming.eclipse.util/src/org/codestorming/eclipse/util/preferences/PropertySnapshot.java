@@ -0,0 +1,95 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.preferences;
+
+import org.codestorming.eclipse.util.preferences.PropertyKey.BooleanKey;
+import org.codestorming.eclipse.util.preferences.PropertyKey.DoubleKey;
+import org.codestorming.eclipse.util.preferences.PropertyKey.IntKey;
+import org.codestorming.eclipse.util.preferences.PropertyKey.LongKey;
+import org.codestorming.eclipse.util.preferences.PropertyKey.StringKey;
+
+/**
+ * Immutable snapshot of the values of properties declared through {@link PropertyKeys}.
+ * <p>
+ * The values are parsed when the snapshot is taken, reading one of them is a plain array
+ * access. A snapshot is typically taken once per build.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ * @see AbstractProjectPropertyProvider#snapshot()
+ */
+public final class PropertySnapshot {
+
+	final int[] ints;
+	final long[] longs;
+	final double[] doubles;
+	final boolean[] booleans;
+	final String[] strings;
+
+	PropertySnapshot(int ints, int longs, int doubles, int booleans, int strings) {
+		this.ints = new int[ints];
+		this.longs = new long[longs];
+		this.doubles = new double[doubles];
+		this.booleans = new boolean[booleans];
+		this.strings = new String[strings];
+	}
+
+	/**
+	 * Returns the value of the given {@code int} property.
+	 * 
+	 * @param key The key of the property.
+	 * @return the value of the property.
+	 */
+	public int get(IntKey key) {
+		return ints[key.slot];
+	}
+
+	/**
+	 * Returns the value of the given {@code long} property.
+	 * 
+	 * @param key The key of the property.
+	 * @return the value of the property.
+	 */
+	public long get(LongKey key) {
+		return longs[key.slot];
+	}
+
+	/**
+	 * Returns the value of the given {@code double} property.
+	 * 
+	 * @param key The key of the property.
+	 * @return the value of the property.
+	 */
+	public double get(DoubleKey key) {
+		return doubles[key.slot];
+	}
+
+	/**
+	 * Returns the value of the given {@code boolean} property.
+	 * 
+	 * @param key The key of the property.
+	 * @return the value of the property.
+	 */
+	public boolean get(BooleanKey key) {
+		return booleans[key.slot];
+	}
+
+	/**
+	 * Returns the value of the given {@code String} property.
+	 * 
+	 * @param key The key of the property.
+	 * @return the value of the property.
+	 */
+	public String get(StringKey key) {
+		return strings[key.slot];
+	}
+}
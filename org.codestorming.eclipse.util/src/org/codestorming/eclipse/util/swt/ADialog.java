@@ -11,11 +11,31 @@
  ****************************************************************************/
 package org.codestorming.eclipse.util.swt;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.codestorming.eclipse.util.EclipseUtilActivator;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Dialog;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.ProgressBar;
 import org.eclipse.swt.widgets.Shell;
 
 /**
@@ -28,6 +48,9 @@ import org.eclipse.swt.widgets.Shell;
  */
 public abstract class ADialog<T> extends Dialog {
 
+	// Prefix of the preference keys of the remembered sizes
+	private static final String SIZE_KEY_PREFIX = "dialogSize."; //$NON-NLS-1$
+
 	private Shell shell;
 
 	/**
@@ -44,6 +67,13 @@ public abstract class ADialog<T> extends Dialog {
 	private int minWidth;
 	private int minHeight;
 
+	private boolean rememberSize;
+
+	// Placeholder shown while the content is loading
+	private Composite placeholder;
+	private Label placeholderLabel;
+	private ProgressBar placeholderBar;
+
 	/**
 	 * Constructs a new instance of this class given only its
 	 * parent.
@@ -153,11 +183,31 @@ public abstract class ADialog<T> extends Dialog {
 		shell = new Shell(parent, shellStyle);
 		shell.setText(getText());
 
-		// Dialog content creation
-		createControl(shell);
-
-		shell.setMinimumSize(minWidth, minHeight);
-		shell.setSize(shell.computeSize(SWT.DEFAULT, SWT.DEFAULT));
+		// Laying out the content once, when the shell is sized
+		GridLayoutHelper.deferLayout(shell, new Runnable() {
+			@Override
+			public void run() {
+				if (hasContentToLoad()) {
+					// Dialog content created once loaded
+					createPlaceholder(shell);
+					scheduleLoading();
+				} else {
+					// Dialog content creation
+					createControl(shell);
+				}
+				shell.setMinimumSize(minWidth, minHeight);
+				final Point size = getRememberedSize();
+				shell.setSize(size != null ? size : shell.computeSize(SWT.DEFAULT, SWT.DEFAULT));
+			}
+		});
+		if (rememberSize) {
+			shell.addDisposeListener(new DisposeListener() {
+				@Override
+				public void widgetDisposed(DisposeEvent e) {
+					saveSize(shell.getSize());
+				}
+			});
+		}
 		shell.open();
 		Display display = parent.getDisplay();
 		while (!shell.isDisposed()) {
@@ -171,11 +221,158 @@ public abstract class ADialog<T> extends Dialog {
 	 * Create the dialog content.
 	 * <p>
 	 * The given {@code parent} is a {@link Shell} without any layout defined.
+	 * <p>
+	 * If the dialog {@link #hasContentToLoad() has content to load}, this method is called
+	 * once the content is loaded.
 	 * 
 	 * @param parent The parent SWT composite.
 	 */
 	protected abstract void createControl(Composite parent);
 
+	/**
+	 * Indicates if this dialog has content to {@link #loadContent(IProgressMonitor) load}
+	 * before creating its controls.
+	 * <p>
+	 * <em>Returns {@code false} by default.</em>
+	 * 
+	 * @return {@code true} if this dialog has content to load.
+	 * @since 3.1
+	 */
+	protected boolean hasContentToLoad() {
+		return false;
+	}
+
+	/**
+	 * Loads the content of this dialog, in a background {@link Job}.
+	 * <p>
+	 * The dialog is opened with a placeholder showing the progress of the loading, and
+	 * its controls are {@link #createControl(Composite) created} once the content is
+	 * loaded. The loading is cancelled if the dialog is closed.
+	 * <p>
+	 * <em>Does nothing by default.</em>
+	 * 
+	 * @param monitor The progress monitor of the loading.
+	 * @return the result of the loading, the controls being created only if it is OK.
+	 * @see #hasContentToLoad()
+	 * @since 3.1
+	 */
+	protected IStatus loadContent(IProgressMonitor monitor) {
+		return Status.OK_STATUS;
+	}
+
+	private void createPlaceholder(Shell parent) {
+		parent.setLayout(new FillLayout());
+		placeholder = new Composite(parent, SWT.NONE);
+		placeholder.setLayout(new GridLayout());
+		placeholderLabel = new Label(placeholder, SWT.WRAP);
+		placeholderLabel.setText("Loading..."); //$NON-NLS-1$
+		placeholderLabel.setLayoutData(new GridData(SWT.FILL, SWT.END, true, true));
+		placeholderBar = new ProgressBar(placeholder, SWT.HORIZONTAL | SWT.INDETERMINATE);
+		placeholderBar.setLayoutData(new GridData(SWT.FILL, SWT.BEGINNING, true, true));
+	}
+
+	private void scheduleLoading() {
+		final Display display = shell.getDisplay();
+		final Job job = new Job("Loading " + getText()) { //$NON-NLS-1$
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				return loadContent(new PlaceholderMonitor(monitor, display));
+			}
+		};
+		job.setSystem(true);
+		job.addJobChangeListener(new JobChangeAdapter() {
+			@Override
+			public void done(final IJobChangeEvent event) {
+				if (!display.isDisposed()) {
+					display.asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							contentLoaded(event.getResult());
+						}
+					});
+				}
+			}
+		});
+		shell.addDisposeListener(new DisposeListener() {
+			@Override
+			public void widgetDisposed(DisposeEvent e) {
+				job.cancel();
+			}
+		});
+		job.schedule();
+	}
+
+	private void contentLoaded(IStatus status) {
+		if (shell.isDisposed() || status.getSeverity() == IStatus.CANCEL) {
+			return;
+		}// else
+		if (!status.isOK()) {
+			placeholderLabel.setText(status.getMessage());
+			placeholderBar.setVisible(false);
+			placeholder.layout();
+			return;
+		}// else
+		GridLayoutHelper.deferLayout(shell, new Runnable() {
+			@Override
+			public void run() {
+				placeholder.dispose();
+				placeholder = null;
+				shell.setLayout(null);
+				createControl(shell);
+				if (getRememberedSize() == null) {
+					final Point size = shell.computeSize(SWT.DEFAULT, SWT.DEFAULT);
+					final Point current = shell.getSize();
+					shell.setSize(Math.max(size.x, current.x), Math.max(size.y, current.y));
+				}
+				shell.layout(true, true);
+			}
+		});
+	}
+
+	/**
+	 * Sets whether the size of this dialog is remembered.
+	 * <p>
+	 * The size of the dialog, when closed, is remembered per dialog class in the instance
+	 * preferences. The next dialog of the same class is opened with this size, sparing
+	 * the computation of its preferred size.
+	 * 
+	 * @param remember {@code true} to remember the size of this dialog.
+	 * @since 3.1
+	 */
+	public void setRememberSize(boolean remember) {
+		rememberSize = remember;
+	}
+
+	private Point getRememberedSize() {
+		if (!rememberSize) {
+			return null;
+		}// else
+		final String value = getPreferences().get(getSizeKey(), null);
+		if (value == null) {
+			return null;
+		}// else
+		final int comma = value.indexOf(',');
+		try {
+			return new Point(Math.max(minWidth, Integer.parseInt(value.substring(0, comma))), Math.max(minHeight,
+					Integer.parseInt(value.substring(comma + 1))));
+		} catch (RuntimeException e) {
+			// Malformed size, computing it
+			return null;
+		}
+	}
+
+	private void saveSize(Point size) {
+		getPreferences().put(getSizeKey(), size.x + "," + size.y); //$NON-NLS-1$
+	}
+
+	private String getSizeKey() {
+		return SIZE_KEY_PREFIX + getClass().getName();
+	}
+
+	private static IEclipsePreferences getPreferences() {
+		return InstanceScope.INSTANCE.getNode(EclipseUtilActivator.PLUGIN_ID);
+	}
+
 	/**
 	 * Called before the dialog closes.<br>
 	 * This method is <strong>not called</strong> if the dialog is already closed.
@@ -203,4 +400,83 @@ public abstract class ADialog<T> extends Dialog {
 		}
 	}
 
+	/**
+	 * Progress monitor reporting the loading progress into the placeholder.
+	 */
+	private class PlaceholderMonitor extends ProgressMonitorWrapper {
+
+		private final Display display;
+
+		// Latest progress, shown by the next update
+		private volatile String taskName;
+		private volatile int totalWork = IProgressMonitor.UNKNOWN;
+		private volatile int worked;
+
+		private final AtomicBoolean updatePending = new AtomicBoolean();
+
+		PlaceholderMonitor(IProgressMonitor monitor, Display display) {
+			super(monitor);
+			this.display = display;
+		}
+
+		@Override
+		public void beginTask(String name, int totalWork) {
+			super.beginTask(name, totalWork);
+			taskName = name;
+			this.totalWork = totalWork;
+			update();
+		}
+
+		@Override
+		public void setTaskName(String name) {
+			super.setTaskName(name);
+			taskName = name;
+			update();
+		}
+
+		@Override
+		public void subTask(String name) {
+			super.subTask(name);
+			taskName = name;
+			update();
+		}
+
+		@Override
+		public void worked(int work) {
+			super.worked(work);
+			worked += work;
+			update();
+		}
+
+		private void update() {
+			if (display.isDisposed() || !updatePending.compareAndSet(false, true)) {
+				return;
+			}// else
+			display.asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					updatePending.set(false);
+					if (placeholder == null || placeholder.isDisposed()) {
+						return;
+					}// else
+					if (taskName != null && taskName.length() > 0) {
+						placeholderLabel.setText(taskName);
+					}
+					if (totalWork > 0 && (placeholderBar.getStyle() & SWT.INDETERMINATE) != 0) {
+						// Replacing the indeterminate bar
+						final ProgressBar bar = new ProgressBar(placeholder, SWT.HORIZONTAL);
+						bar.setLayoutData(placeholderBar.getLayoutData());
+						placeholderBar.dispose();
+						placeholderBar = bar;
+					}
+					if (totalWork > 0) {
+						placeholderBar.setMaximum(totalWork);
+						placeholderBar.setSelection(worked);
+					}
+					placeholder.layout();
+				}
+			});
+		}
+	}
+
 }
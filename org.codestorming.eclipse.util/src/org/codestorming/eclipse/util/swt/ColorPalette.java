@@ -0,0 +1,89 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.swt;
+
+import org.eclipse.swt.graphics.Color;
+
+/**
+ * Indexed sequence of {@link Color Colors} precomputed by the {@link ColorRegistry}.
+ * <p>
+ * A {@code ColorPalette} is obtained with {@link ColorRegistry#getPalette(int...)} or
+ * {@link ColorRegistry#getGradient(int, int...)}. Retrieving one of its colors is a
+ * plain array access, suitable for paint loops.
+ * <p>
+ * The colors of a {@code ColorPalette} are managed by the {@link ColorRegistry} and
+ * <strong>should not</strong> be disposed by users.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+public final class ColorPalette {
+
+	private final Color[] colors;
+
+	/**
+	 * Creates a new {@code ColorPalette}.
+	 * 
+	 * @param colors The colors of the palette.
+	 */
+	ColorPalette(Color[] colors) {
+		this.colors = colors;
+	}
+
+	/**
+	 * Returns the {@link Color} at the given index.
+	 * 
+	 * @param index The index of the color.
+	 * @return the {@link Color} at the given index.
+	 * @throws ArrayIndexOutOfBoundsException if the index is out of range.
+	 */
+	public Color get(int index) {
+		return colors[index];
+	}
+
+	/**
+	 * Returns the {@link Color} at the given position, {@code 0.0} being the first color
+	 * and {@code 1.0} the last one.
+	 * <p>
+	 * Positions outside of {@code [0, 1]} are clamped.
+	 * 
+	 * @param ratio The position of the color in the palette.
+	 * @return the {@link Color} at the given position.
+	 */
+	public Color get(double ratio) {
+		if (ratio <= 0.0 || ratio != ratio) {
+			return colors[0];
+		}// else
+		if (ratio >= 1.0) {
+			return colors[colors.length - 1];
+		}// else
+		return colors[(int) (ratio * (colors.length - 1) + 0.5)];
+	}
+
+	/**
+	 * Returns the number of colors in this palette.
+	 * 
+	 * @return the number of colors in this palette.
+	 */
+	public int size() {
+		return colors.length;
+	}
+
+	/**
+	 * Returns a copy of the colors of this palette.
+	 * 
+	 * @return a copy of the colors of this palette.
+	 */
+	public Color[] toArray() {
+		return colors.clone();
+	}
+}
@@ -11,10 +11,8 @@
  ****************************************************************************/
 package org.codestorming.eclipse.util.swt;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codestorming.eclipse.util.EclipseUtil;
 import org.eclipse.swt.SWT;
@@ -22,8 +20,6 @@ import org.eclipse.swt.SWTError;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.widgets.Display;
-import org.eclipse.swt.widgets.Event;
-import org.eclipse.swt.widgets.Listener;
 
 /**
  * A {@code ColorRegistry} provides unique instances of SWT {@link Color Colors} per
@@ -41,6 +37,20 @@ import org.eclipse.swt.widgets.Listener;
  * </ul>
  * Each color component is an integer between {@code 0} and {@code 255} ({@code 0x00} to
  * {@code 0xFF} in hexadecimal).
+ * <p>
+ * Retrieving an existing color is lock-free, so the {@code getColor} methods can be
+ * called while painting.
+ * <p>
+ * The colors returned by the {@code getColor} methods are kept until their display is
+ * disposed. For colors computed from continuous values, the {@code acquireColor} methods
+ * provide reference counted colors that must be released with the corresponding
+ * {@code releaseColor} methods. The unreferenced acquired colors are kept for reuse and
+ * disposed, least recently released first, when their number exceeds the
+ * {@link #setAcquiredColorsLimit(int) limit}. The {@link #quantize(int, int)} methods
+ * help bounding the number of distinct colors.
+ * <p>
+ * Sequences of colors, like gradients, are precomputed in a single operation with
+ * {@link #getPalette(int...)} and {@link #getGradient(int, int...)}.
  * 
  * @since 2.0
  * @author Thaedrik <thaedrik@gmail.com>
@@ -48,14 +58,27 @@ import org.eclipse.swt.widgets.Listener;
 public final class ColorRegistry {
 
 	// Color registries for each display.
-	private static Map<Display, ColorRegistry> registries = Collections
-			.synchronizedMap(new HashMap<Display, ColorRegistry>());
+	private static final ConcurrentMap<Display, ColorRegistry> registries = new ConcurrentHashMap<Display, ColorRegistry>();
+
+	// Last used registry, avoiding the registries lookup when there is only one display.
+	private static volatile ColorRegistry lastRegistry;
+
+	// Maximum number of acquired colors kept by each registry.
+	private static volatile int acquiredColorsLimit = Integer.MAX_VALUE;
 
 	// Existing colors for this ColorRegistry.
-	private Map<Integer, Color> colors = Collections.synchronizedMap(new TreeMap<Integer, Color>());
+	private final IntColorMap colors = new IntColorMap(64);
+
+	// Reference counted colors for this ColorRegistry.
+	private final ResourcePool<Integer, Color> acquiredColors = new ResourcePool<Integer, Color>() {
+		@Override
+		protected Color create(Integer hexCode) {
+			return createColor(hexCode);
+		}
+	};
 
 	// Display of this ColorRegistry colors.
-	private Display display;
+	private final Display display;
 
 	/**
 	 * Returns the {@link Color} corresponding to the given hexadecimal code.
@@ -75,9 +98,7 @@ public final class ColorRegistry {
 	 * @return the {@link Color} corresponding to the given {@link RGB}.
 	 */
 	public static Color getColor(RGB rgb) {
-		ColorRegistry registry = getRegistry(EclipseUtil.getDisplay());
-		int hexCode = (rgb.red << 16) | (rgb.green << 8) | rgb.blue;
-		return registry != null ? registry.internalGetColor(hexCode) : null;
+		return getColor(rgb.red, rgb.green, rgb.blue);
 	}
 
 	/**
@@ -89,7 +110,187 @@ public final class ColorRegistry {
 	 * @return the {@link Color} corresponding to the given three color components.
 	 */
 	public static Color getColor(int red, int green, int blue) {
-		return getColor(new RGB(red, green, blue));
+		if (red > 255 || red < 0 || green > 255 || green < 0 || blue > 255 || blue < 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		return getColor((red << 16) | (green << 8) | blue);
+	}
+
+	/**
+	 * Returns the {@link ColorPalette} of the colors corresponding to the given
+	 * hexadecimal codes, in the same order.
+	 * 
+	 * @param hexCodes Colors hexadecimal codes.
+	 * @return the {@link ColorPalette} of the colors corresponding to the given
+	 *         hexadecimal codes.
+	 * @since 3.1
+	 */
+	public static ColorPalette getPalette(int... hexCodes) {
+		if (hexCodes.length == 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		ColorRegistry registry = getRegistry(EclipseUtil.getDisplay());
+		return registry != null ? new ColorPalette(registry.internalGetColors(hexCodes)) : null;
+	}
+
+	/**
+	 * Returns the {@link ColorPalette} of the given number of colors, linearly
+	 * interpolated between the given colors.
+	 * <p>
+	 * The first and last colors of the gradient are the first and last given colors, the
+	 * intermediate colors being evenly distributed along the gradient.
+	 * 
+	 * @param steps The number of colors of the gradient.
+	 * @param hexCodes Hexadecimal codes of the colors of the gradient (at least one).
+	 * @return the {@link ColorPalette} of the gradient colors.
+	 * @since 3.1
+	 */
+	public static ColorPalette getGradient(int steps, int... hexCodes) {
+		if (steps < 1 || hexCodes.length == 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		final int[] gradient = new int[steps];
+		final int segments = hexCodes.length - 1;
+		for (int i = 0; i < steps; i++) {
+			if (segments == 0 || steps == 1) {
+				gradient[i] = hexCodes[0];
+			} else {
+				final double position = (double) i * segments / (steps - 1);
+				final int segment = Math.min((int) position, segments - 1);
+				gradient[i] = interpolate(hexCodes[segment], hexCodes[segment + 1], position - segment);
+			}
+		}
+		return getPalette(gradient);
+	}
+
+	private static int interpolate(int from, int to, double ratio) {
+		final int red = interpolateComponent((0xFF0000 & from) >> 16, (0xFF0000 & to) >> 16, ratio);
+		final int green = interpolateComponent((0x00FF00 & from) >> 8, (0x00FF00 & to) >> 8, ratio);
+		final int blue = interpolateComponent(0x0000FF & from, 0x0000FF & to, ratio);
+		return (red << 16) | (green << 8) | blue;
+	}
+
+	private static int interpolateComponent(int from, int to, double ratio) {
+		return (int) (from + (to - from) * ratio + 0.5);
+	}
+
+	/**
+	 * Acquires the {@link Color} corresponding to the given hexadecimal code.
+	 * <p>
+	 * The color must be released with {@link #releaseColor(int)} when not used anymore.
+	 * 
+	 * @param hexCode Color hexadecimal code.
+	 * @return the {@link Color} corresponding to the given hexadecimal code.
+	 * @since 3.1
+	 */
+	public static Color acquireColor(int hexCode) {
+		ColorRegistry registry = getRegistry(EclipseUtil.getDisplay());
+		return registry != null ? registry.acquiredColors.acquire(hexCode) : null;
+	}
+
+	/**
+	 * Acquires the {@link Color} corresponding to the given {@link RGB}.
+	 * <p>
+	 * The color must be released with {@link #releaseColor(RGB)} when not used anymore.
+	 * 
+	 * @param rgb The {@link RGB}.
+	 * @return the {@link Color} corresponding to the given {@link RGB}.
+	 * @since 3.1
+	 */
+	public static Color acquireColor(RGB rgb) {
+		return acquireColor(toHexCode(rgb));
+	}
+
+	/**
+	 * Releases the {@link Color} corresponding to the given hexadecimal code, previously
+	 * acquired with {@link #acquireColor(int)}.
+	 * 
+	 * @param hexCode Color hexadecimal code.
+	 * @since 3.1
+	 */
+	public static void releaseColor(int hexCode) {
+		ColorRegistry registry = getRegistry(EclipseUtil.getDisplay());
+		if (registry != null) {
+			registry.acquiredColors.release(hexCode);
+		}
+	}
+
+	/**
+	 * Releases the {@link Color} corresponding to the given {@link RGB}, previously
+	 * acquired with {@link #acquireColor(RGB)}.
+	 * 
+	 * @param rgb The {@link RGB}.
+	 * @since 3.1
+	 */
+	public static void releaseColor(RGB rgb) {
+		releaseColor(toHexCode(rgb));
+	}
+
+	/**
+	 * Sets the maximum number of acquired colors kept for each display.
+	 * <p>
+	 * When this limit is exceeded, the least recently released unreferenced colors are
+	 * disposed. The referenced colors are never disposed.
+	 * <p>
+	 * <em>Unlimited by default.</em>
+	 * 
+	 * @param limit The maximum number of acquired colors per display.
+	 * @since 3.1
+	 */
+	public static void setAcquiredColorsLimit(int limit) {
+		if (limit < 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		acquiredColorsLimit = limit;
+		for (final ColorRegistry registry : registries.values()) {
+			registry.acquiredColors.setCapacity(limit);
+		}
+	}
+
+	/**
+	 * Snaps each component of the given color to the nearest of {@code levels} values
+	 * evenly distributed between {@code 0} and {@code 255}.
+	 * <p>
+	 * Quantized colors are limited to {@code levels}<sup>3</sup> distinct values.
+	 * 
+	 * @param hexCode Color hexadecimal code.
+	 * @param levels The number of values per component, between {@code 2} and
+	 *        {@code 256}.
+	 * @return the hexadecimal code of the quantized color.
+	 * @since 3.1
+	 */
+	public static int quantize(int hexCode, int levels) {
+		if (levels < 2 || levels > 256) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		return (quantizeComponent((0xFF0000 & hexCode) >> 16, levels) << 16)
+				| (quantizeComponent((0x00FF00 & hexCode) >> 8, levels) << 8)
+				| quantizeComponent(0x0000FF & hexCode, levels);
+	}
+
+	/**
+	 * Snaps each component of the given color to the nearest of {@code levels} values
+	 * evenly distributed between {@code 0} and {@code 255}.
+	 * 
+	 * @param rgb The {@link RGB}.
+	 * @param levels The number of values per component, between {@code 2} and
+	 *        {@code 256}.
+	 * @return the quantized {@link RGB}.
+	 * @since 3.1
+	 */
+	public static RGB quantize(RGB rgb, int levels) {
+		final int hexCode = quantize(toHexCode(rgb), levels);
+		return new RGB((0xFF0000 & hexCode) >> 16, (0x00FF00 & hexCode) >> 8, 0x0000FF & hexCode);
+	}
+
+	private static int quantizeComponent(int component, int levels) {
+		final int steps = levels - 1;
+		final int level = (component * steps + 127) / 255;
+		return (level * 255 + steps / 2) / steps;
+	}
+
+	private static int toHexCode(RGB rgb) {
+		return (rgb.red << 16) | (rgb.green << 8) | rgb.blue;
 	}
 
 	/**
@@ -98,40 +299,49 @@ public final class ColorRegistry {
 	 * @param display The display.
 	 * @return the {@link ColorRegistry} for the given {@link Display}.
 	 */
-	private static ColorRegistry getRegistry(Display display) {
-		if (display.isDisposed())
+	private static ColorRegistry getRegistry(final Display display) {
+		ColorRegistry registry = lastRegistry;
+		if (registry != null && registry.display == display && !display.isDisposed()) {
+			return registry;
+		}// else
+		if (display.isDisposed()) {
+			// The dispose listener may have been registered too late
+			disposeRegistry(display);
 			return null;
-		ColorRegistry registry = registries.get(display);
+		}// else
+		registry = registries.get(display);
 		if (registry == null) {
-			registry = new ColorRegistry(display);
-			registries.put(display, registry);
-			installDisposeListener(display);
+			final ColorRegistry newRegistry = new ColorRegistry(display);
+			newRegistry.acquiredColors.setCapacity(acquiredColorsLimit);
+			registry = registries.putIfAbsent(display, newRegistry);
+			if (registry == null) {
+				registry = newRegistry;
+				// Cleaning up the color registry when the display is disposed
+				SWTUtil.runOnDispose(display, new Runnable() {
+					@Override
+					public void run() {
+						disposeRegistry(display);
+					}
+				});
+			}
 		}
+		lastRegistry = registry;
 		return registry;
 	}
 
-	private static void installDisposeListener(final Display display) {
-		// Listener for cleaning up the color registry when the display is disposed
-		final Listener listener = new Listener() {
-			@Override
-			public void handleEvent(Event event) {
-				final ColorRegistry registry = registries.get(display);
-				registries.remove(registry);
-				synchronized (registry.colors) {
-					for (final Color color : registry.colors.values()) {
-						color.dispose();
-					}
-					registry.colors.clear();
-				}
+	private static void disposeRegistry(Display display) {
+		final ColorRegistry registry = registries.remove(display);
+		if (registry != null) {
+			if (lastRegistry == registry) {
+				lastRegistry = null;
+			}
+			for (final Color color : registry.colors.clear()) {
+				color.dispose();
 			}
-		};
-		// Running in the given Display UI thread.
-		display.syncExec(new Runnable() {
-			@Override
-			public void run() {
-				display.addListener(SWT.Dispose, listener);
+			for (final Color color : registry.acquiredColors.clear()) {
+				color.dispose();
 			}
-		});
+		}
 	}
 
 	/**
@@ -144,15 +354,52 @@ public final class ColorRegistry {
 	}
 
 	private Color internalGetColor(int hexCode) {
-		checkDispose();
 		Color color = colors.get(hexCode);
 		if (color == null) {
-			color = createColor(hexCode);
-			colors.put(hexCode, color);
+			synchronized (colors) {
+				checkDispose();
+				color = colors.get(hexCode);
+				if (color == null) {
+					color = createColor(hexCode);
+					colors.put(hexCode, color);
+				}
+			}
 		}
 		return color;
 	}
 
+	/**
+	 * Returns the colors corresponding to the given hexadecimal codes, creating the
+	 * missing ones while holding the lock only once.
+	 * 
+	 * @param hexCodes Colors hexadecimal codes.
+	 * @return the colors corresponding to the given hexadecimal codes.
+	 */
+	private Color[] internalGetColors(int[] hexCodes) {
+		final Color[] result = new Color[hexCodes.length];
+		boolean missing = false;
+		for (int i = 0; i < hexCodes.length; i++) {
+			result[i] = colors.get(hexCodes[i]);
+			missing |= result[i] == null;
+		}
+		if (missing) {
+			synchronized (colors) {
+				checkDispose();
+				for (int i = 0; i < hexCodes.length; i++) {
+					if (result[i] == null) {
+						Color color = colors.get(hexCodes[i]);
+						if (color == null) {
+							color = createColor(hexCodes[i]);
+							colors.put(hexCodes[i], color);
+						}
+						result[i] = color;
+					}
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Create a new {@link Color} by decomposing the given {@code hexCode} into the three
 	 * color components.
@@ -0,0 +1,350 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.swt;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.codestorming.eclipse.util.EclipseUtil;
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTError;
+import org.eclipse.swt.graphics.Cursor;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.Resource;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * A {@code DeviceResourceCache} provides shared instances of SWT {@link Font Fonts},
+ * {@link Image Images} and {@link Cursor Cursors} per {@link Display} and automatically
+ * disposes of them when their display is disposed.
+ * <p>
+ * The resources are reference counted : each {@code acquire} call must be balanced by
+ * the corresponding {@code release} call. Unreferenced resources are kept for reuse
+ * until the number of resources of their kind exceeds the {@link #setCapacity(int)
+ * capacity} of the cache, the least recently released ones being disposed first.
+ * <p>
+ * The resources managed by a {@code DeviceResourceCache}, <strong>should not</strong> be
+ * disposed by users, as they may be used by others.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ * @see ColorRegistry
+ */
+public final class DeviceResourceCache {
+
+	// Resource caches for each display.
+	private static final ConcurrentMap<Display, DeviceResourceCache> caches = new ConcurrentHashMap<Display, DeviceResourceCache>();
+
+	// Display of this DeviceResourceCache resources.
+	private final Display display;
+
+	private final ResourcePool<List<FontData>, Font> fonts = new ResourcePool<List<FontData>, Font>() {
+		@Override
+		protected Font create(List<FontData> key) {
+			checkDispose();
+			return new Font(display, key.toArray(new FontData[key.size()]));
+		}
+	};
+
+	private final ResourcePool<ImageKey, Image> images = new ResourcePool<ImageKey, Image>() {
+		@Override
+		protected Image create(ImageKey key) {
+			checkDispose();
+			return createImage(key);
+		}
+	};
+
+	private final ResourcePool<Integer, Cursor> cursors = new ResourcePool<Integer, Cursor>() {
+		@Override
+		protected Cursor create(Integer style) {
+			checkDispose();
+			return new Cursor(display, style);
+		}
+	};
+
+	/**
+	 * Returns the {@code DeviceResourceCache} of the current display.
+	 * 
+	 * @return the {@code DeviceResourceCache} of the current display, or {@code null} if
+	 *         it is disposed.
+	 * @see EclipseUtil#getDisplay()
+	 */
+	public static DeviceResourceCache getCache() {
+		return getCache(EclipseUtil.getDisplay());
+	}
+
+	/**
+	 * Returns the {@code DeviceResourceCache} of the given {@link Display}.
+	 * 
+	 * @param display The display.
+	 * @return the {@code DeviceResourceCache} of the given {@link Display}, or
+	 *         {@code null} if it is disposed.
+	 */
+	public static DeviceResourceCache getCache(final Display display) {
+		Assert.isNotNull(display);
+		if (display.isDisposed()) {
+			// The dispose listener may have been registered too late
+			disposeCache(display);
+			return null;
+		}// else
+		DeviceResourceCache cache = caches.get(display);
+		if (cache == null) {
+			final DeviceResourceCache newCache = new DeviceResourceCache(display);
+			cache = caches.putIfAbsent(display, newCache);
+			if (cache == null) {
+				cache = newCache;
+				// Cleaning up the cache when the display is disposed
+				SWTUtil.runOnDispose(display, new Runnable() {
+					@Override
+					public void run() {
+						disposeCache(display);
+					}
+				});
+			}
+		}
+		return cache;
+	}
+
+	private static void disposeCache(Display display) {
+		final DeviceResourceCache cache = caches.remove(display);
+		if (cache != null) {
+			cache.disposeAll();
+		}
+	}
+
+	/**
+	 * Creates a new {@code DeviceResourceCache}.
+	 * 
+	 * @param display The display for which the resources will be created.
+	 */
+	private DeviceResourceCache(Display display) {
+		this.display = display;
+	}
+
+	/**
+	 * Acquires the {@link Font} corresponding to the given {@link FontData}.
+	 * <p>
+	 * The font must be released with {@link #releaseFont(FontData...)} when not used
+	 * anymore.
+	 * 
+	 * @param fontData The font data.
+	 * @return the {@link Font} corresponding to the given {@link FontData}.
+	 */
+	public Font acquireFont(FontData... fontData) {
+		return fonts.acquire(fontKey(fontData));
+	}
+
+	/**
+	 * Releases the {@link Font} corresponding to the given {@link FontData}.
+	 * 
+	 * @param fontData The font data.
+	 */
+	public void releaseFont(FontData... fontData) {
+		fonts.release(fontKey(fontData));
+	}
+
+	/**
+	 * Acquires the {@link Image} created from the given {@link ImageDescriptor}.
+	 * <p>
+	 * The image must be released with {@link #releaseImage(ImageDescriptor)} when not
+	 * used anymore.
+	 * 
+	 * @param descriptor The image descriptor.
+	 * @return the {@link Image} created from the given {@link ImageDescriptor}.
+	 */
+	public Image acquireImage(ImageDescriptor descriptor) {
+		return acquireImage(descriptor, SWT.DEFAULT, SWT.DEFAULT);
+	}
+
+	/**
+	 * Acquires the {@link Image} created from the given {@link ImageDescriptor}, scaled
+	 * to the given size.
+	 * <p>
+	 * The image must be released with {@link #releaseImage(ImageDescriptor, int, int)}
+	 * when not used anymore.
+	 * 
+	 * @param descriptor The image descriptor.
+	 * @param width The width of the image, or {@link SWT#DEFAULT}.
+	 * @param height The height of the image, or {@link SWT#DEFAULT}.
+	 * @return the {@link Image} created from the given {@link ImageDescriptor}.
+	 */
+	public Image acquireImage(ImageDescriptor descriptor, int width, int height) {
+		Assert.isNotNull(descriptor);
+		return images.acquire(new ImageKey(descriptor, width, height));
+	}
+
+	/**
+	 * Releases the {@link Image} created from the given {@link ImageDescriptor}.
+	 * 
+	 * @param descriptor The image descriptor.
+	 */
+	public void releaseImage(ImageDescriptor descriptor) {
+		releaseImage(descriptor, SWT.DEFAULT, SWT.DEFAULT);
+	}
+
+	/**
+	 * Releases the {@link Image} created from the given {@link ImageDescriptor} and
+	 * scaled to the given size.
+	 * 
+	 * @param descriptor The image descriptor.
+	 * @param width The width of the image, or {@link SWT#DEFAULT}.
+	 * @param height The height of the image, or {@link SWT#DEFAULT}.
+	 */
+	public void releaseImage(ImageDescriptor descriptor, int width, int height) {
+		Assert.isNotNull(descriptor);
+		images.release(new ImageKey(descriptor, width, height));
+	}
+
+	/**
+	 * Acquires the {@link Cursor} of the given style.
+	 * <p>
+	 * The cursor must be released with {@link #releaseCursor(int)} when not used anymore.
+	 * 
+	 * @param style The cursor style (one of the {@code SWT.CURSOR_*} constants).
+	 * @return the {@link Cursor} of the given style.
+	 */
+	public Cursor acquireCursor(int style) {
+		return cursors.acquire(style);
+	}
+
+	/**
+	 * Releases the {@link Cursor} of the given style.
+	 * 
+	 * @param style The cursor style (one of the {@code SWT.CURSOR_*} constants).
+	 */
+	public void releaseCursor(int style) {
+		cursors.release(style);
+	}
+
+	/**
+	 * Sets the maximum number of fonts, images and cursors kept by this cache, for each
+	 * kind of resource.
+	 * <p>
+	 * <em>Unlimited by default.</em>
+	 * 
+	 * @param capacity The maximum number of resources of each kind.
+	 */
+	public void setCapacity(int capacity) {
+		fonts.setCapacity(capacity);
+		images.setCapacity(capacity);
+		cursors.setCapacity(capacity);
+	}
+
+	/**
+	 * Returns the number of acquisitions that reused an existing resource.
+	 * 
+	 * @return the number of acquisitions that reused an existing resource.
+	 */
+	public long getHitCount() {
+		return fonts.getHitCount() + images.getHitCount() + cursors.getHitCount();
+	}
+
+	/**
+	 * Returns the number of acquisitions that created a new resource.
+	 * 
+	 * @return the number of acquisitions that created a new resource.
+	 */
+	public long getMissCount() {
+		return fonts.getMissCount() + images.getMissCount() + cursors.getMissCount();
+	}
+
+	/**
+	 * Returns the number of resources currently allocated by this cache.
+	 * 
+	 * @return the number of resources currently allocated by this cache.
+	 */
+	public int getLiveHandleCount() {
+		return fonts.size() + images.size() + cursors.size();
+	}
+
+	private static List<FontData> fontKey(FontData[] fontData) {
+		if (fontData.length == 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		return Arrays.asList(fontData.clone());
+	}
+
+	private Image createImage(ImageKey key) {
+		Image image = key.descriptor.createImage(display);
+		if (key.width != SWT.DEFAULT || key.height != SWT.DEFAULT) {
+			final ImageData data = image.getImageData();
+			final int width = key.width != SWT.DEFAULT ? key.width : data.width;
+			final int height = key.height != SWT.DEFAULT ? key.height : data.height;
+			if (width != data.width || height != data.height) {
+				image.dispose();
+				image = new Image(display, data.scaledTo(width, height));
+			}
+		}
+		return image;
+	}
+
+	private void disposeAll() {
+		disposeAll(fonts.clear());
+		disposeAll(images.clear());
+		disposeAll(cursors.clear());
+	}
+
+	private static void disposeAll(List<? extends Resource> resources) {
+		for (final Resource resource : resources) {
+			resource.dispose();
+		}
+	}
+
+	/**
+	 * Check if the {@link Display} is disposed.
+	 * 
+	 * @throws SWTError ERROR_DEVICE_DISPOSED if the {@link Display} of this
+	 *         {@code DeviceResourceCache} is disposed.
+	 */
+	private void checkDispose() {
+		if (display.isDisposed()) {
+			throw new SWTError(SWT.ERROR_DEVICE_DISPOSED);
+		}
+	}
+
+	private static final class ImageKey {
+
+		final ImageDescriptor descriptor;
+		final int width;
+		final int height;
+
+		ImageKey(ImageDescriptor descriptor, int width, int height) {
+			this.descriptor = descriptor;
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}// else
+			if (!(obj instanceof ImageKey)) {
+				return false;
+			}// else
+			final ImageKey other = (ImageKey) obj;
+			return width == other.width && height == other.height && descriptor.equals(other.descriptor);
+		}
+
+		@Override
+		public int hashCode() {
+			return (descriptor.hashCode() * 31 + width) * 31 + height;
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.swt;
+
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Cached constants of an enumeration class, with an index of their labels sorted for
+ * prefix searches.
+ * <p>
+ * The labels are the lower-cased {@link Object#toString()} of the constants.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+final class EnumConstants {
+
+	private static final Object[] EMPTY = {};
+
+	// Constants by enumeration class. The classes are weakly referenced so their bundle
+	// can be unloaded.
+	private static final Map<Class<?>, SoftReference<EnumConstants>> cache = Collections
+			.synchronizedMap(new WeakHashMap<Class<?>, SoftReference<EnumConstants>>());
+
+	/**
+	 * The constants of the enumeration, in declaration order.
+	 * <p>
+	 * Shared array, <strong>must not</strong> be modified.
+	 */
+	final Object[] constants;
+
+	// Lazily computed index of the labels.
+	private String[] sortedLabels;
+	private int[] sortedIndexes;
+
+	/**
+	 * Returns the {@code EnumConstants} of the given class.
+	 * 
+	 * @param c The class.
+	 * @return the {@code EnumConstants} of the given class, empty if it is not an
+	 *         enumeration.
+	 */
+	static EnumConstants of(Class<?> c) {
+		final SoftReference<EnumConstants> reference = cache.get(c);
+		EnumConstants enumConstants = reference != null ? reference.get() : null;
+		if (enumConstants == null) {
+			final Object[] constants = c.isEnum() ? c.getEnumConstants() : EMPTY;
+			enumConstants = new EnumConstants(constants);
+			cache.put(c, new SoftReference<EnumConstants>(enumConstants));
+		}
+		return enumConstants;
+	}
+
+	private EnumConstants(Object[] constants) {
+		this.constants = constants;
+	}
+
+	/**
+	 * Returns the indexes of the constants whose label starts with the given prefix,
+	 * ignoring case, in the alphabetical order of their labels.
+	 * 
+	 * @param prefix The prefix.
+	 * @return the indexes of the matching constants.
+	 */
+	int[] filter(String prefix) {
+		buildIndex();
+		final String key = prefix.toLowerCase();
+		final int from = lowerBound(key);
+		final int to = lowerBound(key + Character.MAX_VALUE);
+		return Arrays.copyOfRange(sortedIndexes, from, to);
+	}
+
+	private synchronized void buildIndex() {
+		if (sortedIndexes != null) {
+			return;
+		}// else
+		final int length = constants.length;
+		final String[] labels = new String[length];
+		final Integer[] order = new Integer[length];
+		for (int i = 0; i < length; i++) {
+			labels[i] = String.valueOf(constants[i]).toLowerCase();
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return labels[o1].compareTo(labels[o2]);
+			}
+		});
+		final String[] sorted = new String[length];
+		final int[] indexes = new int[length];
+		for (int i = 0; i < length; i++) {
+			indexes[i] = order[i];
+			sorted[i] = labels[indexes[i]];
+		}
+		sortedLabels = sorted;
+		sortedIndexes = indexes;
+	}
+
+	/**
+	 * Returns the position of the first label greater or equal to the given key.
+	 */
+	private int lowerBound(String key) {
+		int low = 0;
+		int high = sortedLabels.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (sortedLabels[middle].compareTo(key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
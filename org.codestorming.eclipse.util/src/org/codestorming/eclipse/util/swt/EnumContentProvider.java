@@ -17,6 +17,10 @@ import org.eclipse.jface.viewers.Viewer;
 /**
  * {@link IStructuredContentProvider} using an enumeration java class for providing
  * enumeration literals.
+ * <p>
+ * The literals of each enumeration are cached, so refreshing the viewer does not copy
+ * them. For large enumerations displayed in {@code SWT.VIRTUAL} viewers, see
+ * {@link LazyEnumContentProvider}.
  * 
  * @author Thaedrik <thaedrik@gmail.com>
  */
@@ -30,7 +34,7 @@ public class EnumContentProvider implements IStructuredContentProvider {
 	 * 
 	 * @return the instance of {@link EnumContentProvider}.
 	 */
-	public static EnumContentProvider getInstance() {
+	public static synchronized EnumContentProvider getInstance() {
 		nb++;
 		if (INSTANCE == null) {
 			INSTANCE = new EnumContentProvider();
@@ -42,25 +46,25 @@ public class EnumContentProvider implements IStructuredContentProvider {
 	public Object[] getElements(Object inputElement) {
 		Object[] enumConstants = {};
 		if (inputElement instanceof Class) {
-			final Class<?> c = (Class<?>) inputElement;
-			if (c.isEnum()) {
-				enumConstants = c.getEnumConstants();
-			}
+			// Copying the shared constants, the viewers may sort the returned array
+			enumConstants = EnumConstants.of((Class<?>) inputElement).constants.clone();
 		}
 		return enumConstants;
 	}
 
 	@Override
 	public void dispose() {
-		nb--;
-		if (nb <= 0) {
-			nb = 0;
-			INSTANCE = null;
+		synchronized (EnumContentProvider.class) {
+			nb--;
+			if (nb <= 0) {
+				nb = 0;
+				INSTANCE = null;
+			}
 		}
 	}
 
 	@Override
 	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
-		viewer.refresh();
+		// The viewer refreshes itself when its input changes
 	}
 }
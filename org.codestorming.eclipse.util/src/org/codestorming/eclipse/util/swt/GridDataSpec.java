@@ -0,0 +1,151 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.swt;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Control;
+
+/**
+ * Immutable description of a {@link GridData}, declared once and applied to any number
+ * of controls :
+ * 
+ * <pre>
+ * static final GridDataSpec LABEL = GridDataSpec.align(SWT.BEGINNING, SWT.CENTER);
+ * static final GridDataSpec FIELD = GridDataSpec.fill().grab(true, false);
+ * </pre>
+ * 
+ * Unlike layouts, a {@code GridData} cannot be shared by controls : each control receives
+ * its own {@code GridData}.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ * @see GridLayoutHelper#apply(org.eclipse.swt.widgets.Composite, GridLayoutSpec, GridDataSpec...)
+ */
+public final class GridDataSpec {
+
+	private final int hAlign;
+	private final int vAlign;
+	private final boolean hGrab;
+	private final boolean vGrab;
+	private final int hSpan;
+	private final int vSpan;
+	private final int widthHint;
+	private final int heightHint;
+
+	private GridDataSpec(int hAlign, int vAlign, boolean hGrab, boolean vGrab, int hSpan, int vSpan, int widthHint,
+			int heightHint) {
+		this.hAlign = hAlign;
+		this.vAlign = vAlign;
+		this.hGrab = hGrab;
+		this.vGrab = vGrab;
+		this.hSpan = hSpan;
+		this.vSpan = vSpan;
+		this.widthHint = widthHint;
+		this.heightHint = heightHint;
+	}
+
+	/**
+	 * Creates a spec with the given alignments.
+	 * 
+	 * @param hAlign The horizontal alignment ({@link SWT#BEGINNING}, {@link SWT#CENTER},
+	 *        {@link SWT#END} or {@link SWT#FILL}).
+	 * @param vAlign The vertical alignment.
+	 * @return the new spec.
+	 */
+	public static GridDataSpec align(int hAlign, int vAlign) {
+		return new GridDataSpec(hAlign, vAlign, false, false, 1, 1, SWT.DEFAULT, SWT.DEFAULT);
+	}
+
+	/**
+	 * Creates a spec filling its cell horizontally and vertically.
+	 * 
+	 * @return the new spec.
+	 */
+	public static GridDataSpec fill() {
+		return align(SWT.FILL, SWT.FILL);
+	}
+
+	/**
+	 * Returns a copy of this spec grabbing the excess space as specified.
+	 * 
+	 * @param horizontal {@code true} to grab the horizontal excess space.
+	 * @param vertical {@code true} to grab the vertical excess space.
+	 * @return the new spec.
+	 */
+	public GridDataSpec grab(boolean horizontal, boolean vertical) {
+		return new GridDataSpec(hAlign, vAlign, horizontal, vertical, hSpan, vSpan, widthHint, heightHint);
+	}
+
+	/**
+	 * Returns a copy of this spec spanning the given number of cells.
+	 * 
+	 * @param horizontal The number of columns.
+	 * @param vertical The number of rows.
+	 * @return the new spec.
+	 */
+	public GridDataSpec span(int horizontal, int vertical) {
+		Assert.isTrue(horizontal >= 1 && vertical >= 1);
+		return new GridDataSpec(hAlign, vAlign, hGrab, vGrab, horizontal, vertical, widthHint, heightHint);
+	}
+
+	/**
+	 * Returns a copy of this spec with the given size hints.
+	 * 
+	 * @param width The width hint, or {@link SWT#DEFAULT}.
+	 * @param height The height hint, or {@link SWT#DEFAULT}.
+	 * @return the new spec.
+	 */
+	public GridDataSpec hint(int width, int height) {
+		return new GridDataSpec(hAlign, vAlign, hGrab, vGrab, hSpan, vSpan, width, height);
+	}
+
+	/**
+	 * Returns the number of columns spanned by this spec.
+	 * 
+	 * @return the number of columns spanned.
+	 */
+	public int getHorizontalSpan() {
+		return hSpan;
+	}
+
+	/**
+	 * Creates a new {@link GridData} described by this spec.
+	 * 
+	 * @return the new {@link GridData}.
+	 */
+	public GridData create() {
+		final GridData data = new GridData(hAlign, vAlign, hGrab, vGrab, hSpan, vSpan);
+		data.widthHint = widthHint;
+		data.heightHint = heightHint;
+		return data;
+	}
+
+	/**
+	 * Sets a new {@link GridData} described by this spec on the given control.
+	 * <p>
+	 * A {@link Button push button} without width hint is given the
+	 * {@link SWTUtil#computeButton(Button, GridData) standard button width}.
+	 * 
+	 * @param control The control.
+	 */
+	public void apply(Control control) {
+		final GridData data = create();
+		if (widthHint == SWT.DEFAULT && control instanceof Button && (control.getStyle() & SWT.PUSH) != 0) {
+			SWTUtil.computeButton((Button) control, data);
+		} else {
+			control.setLayoutData(data);
+		}
+	}
+}
@@ -11,8 +11,14 @@
  ****************************************************************************/
 package org.codestorming.eclipse.util.swt;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
 
 /**
  * Helper for creating SWT {@link GridLayout GridLayouts}.
@@ -123,4 +129,95 @@ public class GridLayoutHelper {
 		gl.verticalSpacing = vSpacing;
 		return gl;
 	}
+
+	/**
+	 * Runs the given {@code runnable} with the layout of the given composite deferred.
+	 * <p>
+	 * The controls created or modified by the {@code runnable} are laid out in a single
+	 * pass, once the {@code runnable} is done. The deferring scopes can be nested.
+	 * 
+	 * @param composite The composite whose layout is deferred.
+	 * @param runnable The runnable creating or modifying the controls.
+	 * @see Composite#setLayoutDeferred(boolean)
+	 * @since 3.1
+	 */
+	public static void deferLayout(Composite composite, Runnable runnable) {
+		Assert.isNotNull(runnable);
+		composite.setLayoutDeferred(true);
+		try {
+			runnable.run();
+		} finally {
+			composite.setLayoutDeferred(false);
+		}
+	}
+
+	/**
+	 * Applies the given specs to the given composite and its children, in a single layout
+	 * pass.
+	 * <p>
+	 * The {@code layoutSpec} is set on the {@code parent}, and the children are given the
+	 * {@code columnSpecs} in turn, each spec describing the cells of a column. A spec
+	 * spanning several columns stands for the columns it spans. Children with a
+	 * {@code null} spec keep their layout data.
+	 * 
+	 * @param parent The parent composite.
+	 * @param layoutSpec The spec of the layout of the {@code parent}.
+	 * @param columnSpecs The specs of the cells of each column.
+	 * @since 3.1
+	 */
+	public static void apply(final Composite parent, final GridLayoutSpec layoutSpec,
+			final GridDataSpec... columnSpecs) {
+		Assert.isNotNull(layoutSpec);
+		deferLayout(parent, new Runnable() {
+			@Override
+			public void run() {
+				layoutSpec.apply(parent);
+				if (columnSpecs.length == 0) {
+					return;
+				}// else
+				int column = 0;
+				for (final Control child : parent.getChildren()) {
+					final GridDataSpec spec = columnSpecs[column % columnSpecs.length];
+					if (spec != null) {
+						spec.apply(child);
+						column += spec.getHorizontalSpan();
+					} else {
+						column++;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Measures the layout time of the given composite and of each of its descendant
+	 * composites.
+	 * <p>
+	 * The tree is first laid out once with {@code layout(true, true)}, filling the cached
+	 * sizes of the controls. Each composite is then laid out alone, with the cached sizes
+	 * of its children : its recorded time is its own layout time, excluding its
+	 * descendants. Intended for diagnosing slow forms.
+	 * 
+	 * @param composite The root of the composite tree.
+	 * @return the own layout time (in microseconds) of each composite, the root first.
+	 * @since 3.1
+	 */
+	public static Map<Composite, Long> measureLayout(Composite composite) {
+		composite.layout(true, true);
+		final Map<Composite, Long> times = new LinkedHashMap<Composite, Long>();
+		measureLayout(composite, times);
+		return times;
+	}
+
+	private static void measureLayout(Composite composite, Map<Composite, Long> times) {
+		final long start = System.nanoTime();
+		// Not flushing the caches, the children are only laid out again if resized
+		composite.layout(false, false);
+		times.put(composite, Long.valueOf(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)));
+		for (final Control child : composite.getChildren()) {
+			if (child instanceof Composite) {
+				measureLayout((Composite) child, times);
+			}
+		}
+	}
 }
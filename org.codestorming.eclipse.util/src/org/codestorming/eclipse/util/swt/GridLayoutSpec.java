@@ -0,0 +1,130 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.swt;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+
+/**
+ * Immutable description of a {@link GridLayout}, declared once and applied to any number
+ * of composites :
+ * 
+ * <pre>
+ * static final GridLayoutSpec FORM = GridLayoutSpec.columns(2).margins(5, 5);
+ * </pre>
+ * 
+ * The composites a spec is applied to share the same {@code GridLayout}, which must
+ * therefore not be modified.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ * @see GridLayoutHelper#apply(Composite, GridLayoutSpec, GridDataSpec...)
+ */
+public final class GridLayoutSpec {
+
+	private final int columns;
+	private final boolean equalWidth;
+	private final int marginHeight;
+	private final int marginWidth;
+	private final int hSpacing;
+	private final int vSpacing;
+
+	// Layout shared by the composites
+	private GridLayout layout;
+
+	private GridLayoutSpec(int columns, boolean equalWidth, int marginHeight, int marginWidth, int hSpacing,
+			int vSpacing) {
+		Assert.isTrue(columns >= 1);
+		Assert.isTrue(marginHeight >= 0 && marginWidth >= 0);
+		Assert.isTrue(hSpacing >= 0 && vSpacing >= 0);
+		this.columns = columns;
+		this.equalWidth = equalWidth;
+		this.marginHeight = marginHeight;
+		this.marginWidth = marginWidth;
+		this.hSpacing = hSpacing;
+		this.vSpacing = vSpacing;
+	}
+
+	/**
+	 * Creates a spec with the given number of columns (of non-equal width), no margin and
+	 * default spacing (5).
+	 * 
+	 * @param columns The number of columns.
+	 * @return the new spec.
+	 */
+	public static GridLayoutSpec columns(int columns) {
+		return new GridLayoutSpec(columns, false, 0, 0, 5, 5);
+	}
+
+	/**
+	 * Returns a copy of this spec with columns of equal width.
+	 * 
+	 * @return the new spec.
+	 */
+	public GridLayoutSpec equalWidth() {
+		return new GridLayoutSpec(columns, true, marginHeight, marginWidth, hSpacing, vSpacing);
+	}
+
+	/**
+	 * Returns a copy of this spec with the given margins.
+	 * 
+	 * @param marginHeight The layout marginHeight.
+	 * @param marginWidth The layout marginWidth.
+	 * @return the new spec.
+	 */
+	public GridLayoutSpec margins(int marginHeight, int marginWidth) {
+		return new GridLayoutSpec(columns, equalWidth, marginHeight, marginWidth, hSpacing, vSpacing);
+	}
+
+	/**
+	 * Returns a copy of this spec with the given spacing.
+	 * 
+	 * @param hSpacing The horizontal spacing.
+	 * @param vSpacing The vertical spacing.
+	 * @return the new spec.
+	 */
+	public GridLayoutSpec spacing(int hSpacing, int vSpacing) {
+		return new GridLayoutSpec(columns, equalWidth, marginHeight, marginWidth, hSpacing, vSpacing);
+	}
+
+	/**
+	 * Returns the number of columns of this spec.
+	 * 
+	 * @return the number of columns.
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Returns the {@link GridLayout} described by this spec, shared by all its users.
+	 * 
+	 * @return the shared {@link GridLayout}.
+	 */
+	public synchronized GridLayout getLayout() {
+		if (layout == null) {
+			layout = GridLayoutHelper.newGridLayout(columns, equalWidth, marginHeight, marginWidth, hSpacing,
+					vSpacing);
+		}
+		return layout;
+	}
+
+	/**
+	 * Sets the layout described by this spec on the given composite.
+	 * 
+	 * @param composite The composite.
+	 */
+	public void apply(Composite composite) {
+		composite.setLayout(getLayout());
+	}
+}
@@ -0,0 +1,172 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.swt;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.swt.graphics.Color;
+
+/**
+ * Open-addressed map of {@link Color Colors} keyed by a primitive {@code int}.
+ * <p>
+ * Lookups are lock-free : the entries are immutable and published through an
+ * {@link AtomicReferenceArray}. Modifications are synchronized on the map, so callers can
+ * synchronize on it for atomic <em>create-if-absent</em> operations.
+ * <p>
+ * A lookup running concurrently with a resize may miss a new entry, callers must then
+ * check again while holding the lock before creating it.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+final class IntColorMap {
+
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private volatile AtomicReferenceArray<Entry> table;
+
+	// Number of entries, guarded by this.
+	private int size;
+
+	/**
+	 * Creates a new {@code IntColorMap}.
+	 * 
+	 * @param initialCapacity The initial capacity (rounded to a power of two).
+	 */
+	IntColorMap(int initialCapacity) {
+		int capacity = 2;
+		while (capacity < initialCapacity && capacity < MAX_CAPACITY) {
+			capacity <<= 1;
+		}
+		table = new AtomicReferenceArray<Entry>(capacity);
+	}
+
+	/**
+	 * Returns the {@link Color} associated to the given key.
+	 * 
+	 * @param key The key.
+	 * @return the {@link Color} associated to the given key or {@code null}.
+	 */
+	Color get(int key) {
+		final AtomicReferenceArray<Entry> tab = table;
+		final int mask = tab.length() - 1;
+		int index = hash(key) & mask;
+		Entry entry;
+		while ((entry = tab.get(index)) != null) {
+			if (entry.key == key) {
+				return entry.color;
+			}// else
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Associates the given {@link Color} to the specified key, replacing the previous
+	 * association if any.
+	 * 
+	 * @param key The key.
+	 * @param color The color (must not be {@code null}).
+	 */
+	synchronized void put(int key, Color color) {
+		if ((size + 1) * 2 > table.length()) {
+			resize();
+		}
+		if (insert(table, new Entry(key, color))) {
+			size++;
+		}
+	}
+
+	/**
+	 * Returns the number of colors in this map.
+	 * 
+	 * @return the number of colors in this map.
+	 */
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Removes all the entries of this map.
+	 * 
+	 * @return the colors that were in this map.
+	 */
+	synchronized Color[] clear() {
+		final AtomicReferenceArray<Entry> tab = table;
+		final Color[] colors = new Color[size];
+		int i = 0;
+		for (int index = 0; index < tab.length(); index++) {
+			final Entry entry = tab.get(index);
+			if (entry != null) {
+				colors[i++] = entry.color;
+			}
+		}
+		table = new AtomicReferenceArray<Entry>(2);
+		size = 0;
+		return colors;
+	}
+
+	private void resize() {
+		final AtomicReferenceArray<Entry> oldTable = table;
+		if (oldTable.length() >= MAX_CAPACITY) {
+			throw new IllegalStateException("Too many colors"); //$NON-NLS-1$
+		}
+		final AtomicReferenceArray<Entry> newTable = new AtomicReferenceArray<Entry>(oldTable.length() << 1);
+		for (int index = 0; index < oldTable.length(); index++) {
+			final Entry entry = oldTable.get(index);
+			if (entry != null) {
+				insert(newTable, entry);
+			}
+		}
+		table = newTable;
+	}
+
+	/**
+	 * Inserts the given entry in the specified table.
+	 * 
+	 * @return {@code true} if a new slot has been used;<br>
+	 *         {@code false} if an existing entry has been replaced.
+	 */
+	private static boolean insert(AtomicReferenceArray<Entry> tab, Entry newEntry) {
+		final int mask = tab.length() - 1;
+		int index = hash(newEntry.key) & mask;
+		Entry entry;
+		while ((entry = tab.get(index)) != null) {
+			if (entry.key == newEntry.key) {
+				tab.set(index, newEntry);
+				return false;
+			}// else
+			index = (index + 1) & mask;
+		}
+		tab.set(index, newEntry);
+		return true;
+	}
+
+	/**
+	 * Spreads the bits of the given key, RGB codes of close colors being contiguous.
+	 */
+	private static int hash(int key) {
+		final int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static final class Entry {
+
+		final int key;
+		final Color color;
+
+		Entry(int key, Color color) {
+			this.key = key;
+			this.color = color;
+		}
+	}
+}
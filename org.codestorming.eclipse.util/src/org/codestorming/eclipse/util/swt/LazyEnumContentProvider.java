@@ -0,0 +1,117 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.swt;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.jface.viewers.AbstractTableViewer;
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.SWT;
+
+/**
+ * {@link ILazyContentProvider} using an enumeration java class for providing
+ * enumeration literals to a {@link SWT#VIRTUAL virtual} {@link AbstractTableViewer table
+ * viewer}.
+ * <p>
+ * Only the visible rows are materialized. The literals can be filtered by the prefix of
+ * their label with {@link #setFilter(String)}, the matching literals being then
+ * displayed in alphabetical order.
+ * 
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ * @see EnumContentProvider
+ */
+public class LazyEnumContentProvider implements ILazyContentProvider {
+
+	private AbstractTableViewer viewer;
+
+	private EnumConstants enumConstants;
+
+	private String filter;
+
+	// Indexes of the displayed constants, null if all are displayed.
+	private int[] displayed;
+
+	@Override
+	public void inputChanged(Viewer viewer, Object oldInput, Object newInput) {
+		Assert.isLegal(viewer instanceof AbstractTableViewer, "LazyEnumContentProvider requires a table viewer"); //$NON-NLS-1$
+		this.viewer = (AbstractTableViewer) viewer;
+		if (newInput instanceof Class) {
+			enumConstants = EnumConstants.of((Class<?>) newInput);
+		} else {
+			enumConstants = null;
+		}
+		applyFilter();
+	}
+
+	@Override
+	public void updateElement(int index) {
+		if (viewer != null && index < getElementCount()) {
+			viewer.replace(getElement(index), index);
+		}
+	}
+
+	/**
+	 * Displays only the literals whose label starts with the given prefix, ignoring
+	 * case.
+	 * 
+	 * @param prefix The prefix, or {@code null} or an empty string for displaying all the
+	 *        literals.
+	 */
+	public void setFilter(String prefix) {
+		filter = prefix;
+		applyFilter();
+		if (viewer != null) {
+			viewer.refresh();
+		}
+	}
+
+	/**
+	 * Returns the number of displayed literals.
+	 * 
+	 * @return the number of displayed literals.
+	 */
+	public int getElementCount() {
+		if (enumConstants == null) {
+			return 0;
+		}// else
+		return displayed != null ? displayed.length : enumConstants.constants.length;
+	}
+
+	/**
+	 * Returns the displayed literal at the given index.
+	 * 
+	 * @param index The index of the literal in the viewer.
+	 * @return the displayed literal at the given index.
+	 */
+	public Object getElement(int index) {
+		return enumConstants.constants[displayed != null ? displayed[index] : index];
+	}
+
+	private void applyFilter() {
+		if (enumConstants != null && filter != null && filter.length() > 0) {
+			displayed = enumConstants.filter(filter);
+		} else {
+			displayed = null;
+		}
+		if (viewer != null) {
+			viewer.setItemCount(getElementCount());
+		}
+	}
+
+	@Override
+	public void dispose() {
+		viewer = null;
+		enumConstants = null;
+		displayed = null;
+	}
+}
@@ -0,0 +1,214 @@
+/***************************************************************************
+ * Copyright (c) 2013 Codestorming.org.
+ * 
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Codestorming - initial API and implementation
+ ****************************************************************************/
+package org.codestorming.eclipse.util.swt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.Assert;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTError;
+import org.eclipse.swt.graphics.Resource;
+
+/**
+ * Pool of reference counted SWT {@link Resource Resources}.
+ * <p>
+ * A resource is created when first {@link #acquire(Object) acquired} and stays in the
+ * pool after its last {@link #release(Object) release}, so it can be acquired again
+ * without being recreated. When the pool holds more resources than its capacity, the
+ * least recently released unreferenced resources are disposed.
+ * <p>
+ * The referenced resources are never disposed, so the pool can exceed its capacity if
+ * all its resources are referenced.
+ * <p>
+ * The resources are created outside of the pool lock, so slow creations do not block
+ * the lookups of other resources. Once {@link #clear() cleared}, the pool is disposed :
+ * a resource created concurrently is disposed, and the following acquisitions fail.
+ * 
+ * @param <K> The type of the resources keys.
+ * @param <R> The type of the resources.
+ * @author Thaedrik <thaedrik@gmail.com>
+ * @since 3.1
+ */
+abstract class ResourcePool<K, R extends Resource> {
+
+	private final Map<K, Entry<R>> entries = new HashMap<K, Entry<R>>();
+
+	// Unreferenced entries, from the least to the most recently released.
+	private final LinkedHashMap<K, Entry<R>> idle = new LinkedHashMap<K, Entry<R>>();
+
+	private int capacity = Integer.MAX_VALUE;
+
+	private long hits;
+	private long misses;
+
+	// Whether the pool has been cleared, its resources being disposed
+	private boolean disposed;
+
+	/**
+	 * Creates the resource corresponding to the given key.
+	 * 
+	 * @param key The key of the resource.
+	 * @return the created resource.
+	 */
+	protected abstract R create(K key);
+
+	/**
+	 * Returns the resource corresponding to the given key, creating it if necessary, and
+	 * increments its reference count.
+	 * 
+	 * @param key The key of the resource.
+	 * @return the resource corresponding to the given key.
+	 * @throws SWTError ERROR_DEVICE_DISPOSED if this pool has been cleared.
+	 */
+	R acquire(K key) {
+		synchronized (this) {
+			checkDisposed();
+			final Entry<R> entry = entries.get(key);
+			if (entry != null) {
+				hits++;
+				return reference(key, entry);
+			}// else
+			misses++;
+		}
+		final R resource = create(key);
+		synchronized (this) {
+			if (disposed) {
+				// Cleared during the creation, nobody would dispose the resource
+				resource.dispose();
+				checkDisposed();
+			}// else
+			Entry<R> entry = entries.get(key);
+			if (entry != null) {
+				// Created concurrently by another thread
+				resource.dispose();
+			} else {
+				entry = new Entry<R>(resource);
+				entries.put(key, entry);
+			}
+			final R referenced = reference(key, entry);
+			evict();
+			return referenced;
+		}
+	}
+
+	private R reference(K key, Entry<R> entry) {
+		if (entry.references++ == 0) {
+			idle.remove(key);
+		}
+		return entry.resource;
+	}
+
+	/**
+	 * Decrements the reference count of the resource corresponding to the given key.
+	 * 
+	 * @param key The key of the resource.
+	 * @return {@code true} if the resource was referenced;<br>
+	 *         {@code false} otherwise.
+	 */
+	synchronized boolean release(K key) {
+		final Entry<R> entry = entries.get(key);
+		if (entry == null || entry.references == 0) {
+			return false;
+		}// else
+		if (--entry.references == 0) {
+			idle.put(key, entry);
+			evict();
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the maximum number of resources kept by this pool.
+	 * 
+	 * @param capacity The capacity (must be positive).
+	 */
+	synchronized void setCapacity(int capacity) {
+		Assert.isTrue(capacity >= 0);
+		this.capacity = capacity;
+		evict();
+	}
+
+	/**
+	 * Returns the number of resources held by this pool.
+	 * 
+	 * @return the number of resources held by this pool.
+	 */
+	synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of acquisitions of an existing resource.
+	 * 
+	 * @return the number of acquisitions of an existing resource.
+	 */
+	synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of acquisitions that needed to create a resource.
+	 * 
+	 * @return the number of acquisitions that needed to create a resource.
+	 */
+	synchronized long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * Removes all the resources of this pool, whether they are referenced or not, and
+	 * disposes this pool.
+	 * 
+	 * @return the removed resources, <strong>not disposed</strong>.
+	 */
+	synchronized List<R> clear() {
+		disposed = true;
+		final List<R> resources = new ArrayList<R>(entries.size());
+		for (final Entry<R> entry : entries.values()) {
+			resources.add(entry.resource);
+		}
+		entries.clear();
+		idle.clear();
+		return resources;
+	}
+
+	private void checkDisposed() {
+		if (disposed) {
+			throw new SWTError(SWT.ERROR_DEVICE_DISPOSED);
+		}
+	}
+
+	private void evict() {
+		final Iterator<Map.Entry<K, Entry<R>>> iter = idle.entrySet().iterator();
+		while (entries.size() > capacity && iter.hasNext()) {
+			final Map.Entry<K, Entry<R>> eldest = iter.next();
+			iter.remove();
+			entries.remove(eldest.getKey());
+			eldest.getValue().resource.dispose();
+		}
+	}
+
+	private static class Entry<R> {
+
+		final R resource;
+		int references;
+
+		Entry(R resource) {
+			this.resource = resource;
+		}
+	}
+}
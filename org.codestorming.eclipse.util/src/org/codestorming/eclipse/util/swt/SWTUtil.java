@@ -11,16 +11,25 @@
  ****************************************************************************/
 package org.codestorming.eclipse.util.swt;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.codestorming.eclipse.util.EclipseUtilActivator;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
 import org.eclipse.swt.events.KeyAdapter;
 import org.eclipse.swt.events.KeyEvent;
 import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Text;
@@ -35,6 +44,9 @@ public class SWTUtil {
 
 	public static final int BUTTON_STD_WIDTH = 100;
 
+	// Computed widths of the text buttons, by font data and style + text
+	private static final Map<List<FontData>, Map<String, Integer>> buttonWidths = new HashMap<List<FontData>, Map<String, Integer>>();
+
 	// Suppressing default constructor, ensuring non-instantiability.
 	private SWTUtil() {}
 
@@ -50,6 +62,45 @@ public class SWTUtil {
 		return display != null ? display : Display.getDefault();
 	}
 
+	/**
+	 * Runs the given {@code runnable} when the given {@link Display} is disposed.
+	 * <p>
+	 * This method never waits for the display's thread : when called from another thread,
+	 * the dispose listener is registered asynchronously. If the display is already
+	 * disposed, the {@code runnable} is run immediately.
+	 * 
+	 * @param display The display.
+	 * @param runnable The code to run when the display is disposed.
+	 * @since 3.1
+	 */
+	public static void runOnDispose(final Display display, final Runnable runnable) {
+		final Runnable registration = new Runnable() {
+			@Override
+			public void run() {
+				if (display.isDisposed()) {
+					runnable.run();
+				} else {
+					display.addListener(SWT.Dispose, new Listener() {
+						@Override
+						public void handleEvent(Event event) {
+							runnable.run();
+						}
+					});
+				}
+			}
+		};
+		try {
+			if (display.getThread() == Thread.currentThread()) {
+				registration.run();
+			} else {
+				display.asyncExec(registration);
+			}
+		} catch (SWTException e) {
+			// The display has been disposed
+			runnable.run();
+		}
+	}
+
 	/**
 	 * Returns the system default {@link Font font}.
 	 * <p>
@@ -184,12 +235,14 @@ public class SWTUtil {
 	/**
 	 * Sets the minimum width of the given {@link Button button} to
 	 * {@link #BUTTON_STD_WIDTH}.
+	 * <p>
+	 * The width of a button without image is computed once per font, style and text.
 	 * 
 	 * @param button
 	 * @param data
 	 */
 	public static void computeButton(Button button, GridData data) {
-		int width = button.computeSize(SWT.DEFAULT, SWT.DEFAULT).x;
+		int width = computeButtonWidth(button);
 		if (width < BUTTON_STD_WIDTH) {
 			width = BUTTON_STD_WIDTH;
 		}
@@ -198,6 +251,33 @@ public class SWTUtil {
 		button.setLayoutData(data);
 	}
 
+	private static int computeButtonWidth(Button button) {
+		final Font font = button.getFont();
+		if (button.getImage() != null || font == null || font.isDisposed()) {
+			return button.computeSize(SWT.DEFAULT, SWT.DEFAULT).x;
+		}// else
+		// Keyed by the font data, a disposed font handle being reusable by another font
+		final List<FontData> fontKey = Arrays.asList(font.getFontData());
+		final String key = button.getStyle() + ":" + button.getText(); //$NON-NLS-1$
+		synchronized (buttonWidths) {
+			final Map<String, Integer> widths = buttonWidths.get(fontKey);
+			final Integer width = widths != null ? widths.get(key) : null;
+			if (width != null) {
+				return width.intValue();
+			}
+		}
+		final int width = button.computeSize(SWT.DEFAULT, SWT.DEFAULT).x;
+		synchronized (buttonWidths) {
+			Map<String, Integer> widths = buttonWidths.get(fontKey);
+			if (widths == null) {
+				widths = new HashMap<String, Integer>();
+				buttonWidths.put(fontKey, widths);
+			}
+			widths.put(key, Integer.valueOf(width));
+		}
+		return width;
+	}
+
 	/**
 	 * Create and open an error {@link MessageBox} with the given parent {@code shell},
 	 * {@code title} and {@code message}.